@@ -0,0 +1,24 @@
+package Benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line options (e.g. a benchmark regex, -p fleet_size=10000)
+ * and writes the results as JSON to jmh-result.json unless another format or file is specified.
+ */
+public class Benchmark_Runner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions command_line_options = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(command_line_options);
+        if (!command_line_options.getResultFormat().hasValue()) options.resultFormat(ResultFormatType.JSON);
+        if (!command_line_options.getResult().hasValue()) options.result("jmh-result.json");
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,51 @@
+package Benchmarks;
+
+import Services.Bitmap;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the rendering of a bitmap into a ppm file (written into the working directory and deleted afterwards).
+ * The output of the bitmap is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Bitmap_Benchmark {
+
+    @Param({"64", "512", "1920"})
+    int size;
+
+    private Bitmap bitmap;
+    private String filename;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        filename = "benchmark_bitmap_" + size + ".ppm";
+        bitmap = new Bitmap(size, size, filename, false);
+        for (int y = 1; y <= size; y++) {
+            for (int x = 1; x <= size; x++) {
+                bitmap.changePixel(x, y, bitmap.new Color(new int[]{x % 256, y % 256, (x + y) % 256}));
+            }
+        }
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // render() reports new files, which would end up in the results
+        bitmap.render(); // Creates the file upfront, so no measured render creates it
+    }
+
+    @TearDown(Level.Trial)
+    public void teardown() {
+        new File(System.getProperty("user.dir"), filename).delete();
+    }
+
+    @Benchmark
+    public void render() {
+        bitmap.render();
+    }
+}
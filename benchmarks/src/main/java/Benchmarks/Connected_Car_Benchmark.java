@@ -0,0 +1,56 @@
+package Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per car work of connected cars: charging, discharging and the charging priority.
+ * Each invocation covers every connected car of the fleet (half of the fleet size).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class Connected_Car_Benchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int fleet_size;
+
+    @Param({"1", "15", "60"})
+    int tick_speed;
+
+    @Param({"default", "work", "mixed"})
+    String profile_mix;
+
+    private Simulation simulation;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulation = Simulation.create(fleet_size, tick_speed, profile_mix, "serial", 42);
+    }
+
+    // The charge status is restored before each iteration, otherwise the cars end up full or empty in later iterations.
+    // Level.Invocation would be more even, but is unreliable for methods that take only microseconds.
+    @Setup(Level.Iteration)
+    public void reset() {
+        simulation.reset();
+    }
+
+    @Benchmark
+    public double tick_charge() {
+        return simulation.tick_charge();
+    }
+
+    @Benchmark
+    public double tick_discharge() {
+        return simulation.tick_discharge();
+    }
+
+    @Benchmark
+    public int get_charging_priority() {
+        return simulation.charging_priorities();
+    }
+}
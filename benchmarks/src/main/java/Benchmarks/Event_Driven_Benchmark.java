@@ -0,0 +1,40 @@
+package Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the grid in event driven mode, which only supports a tick speed of 1.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class Event_Driven_Benchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int fleet_size;
+
+    @Param({"default", "work", "mixed"})
+    String profile_mix;
+
+    private Simulation simulation;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulation = Simulation.create(fleet_size, 1, profile_mix, "event", 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        simulation.reset();
+    }
+
+    @Benchmark
+    public void operate_hour() {
+        simulation.operate(60);
+    }
+}
@@ -0,0 +1,51 @@
+package Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the tick loop of the grid in the fixed tick modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class Grid_Benchmark {
+
+    @Param({"100", "10000", "1000000"})
+    int fleet_size;
+
+    @Param({"1", "15"})
+    int tick_speed;
+
+    @Param({"default", "work", "mixed"})
+    String profile_mix;
+
+    @Param({"serial", "parallel", "columnar"})
+    String mode;
+
+    private Simulation simulation;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulation = Simulation.create(fleet_size, tick_speed, profile_mix, mode, 42);
+    }
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        simulation.reset();
+    }
+
+    @Benchmark
+    public void operate_hour() {
+        simulation.operate(60);
+    }
+
+    @Benchmark
+    public void manage_cars() {
+        simulation.manage_cars();
+    }
+}
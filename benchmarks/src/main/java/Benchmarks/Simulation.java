@@ -0,0 +1,71 @@
+package Benchmarks;
+
+/**
+ * The view of the benchmarks onto a running simulation.
+ * The simulation classes live in the default package, which can't be imported by the generated benchmark code, so the
+ * default package class Simulation_Fixture implements this interface and is loaded by name.
+ */
+public interface Simulation {
+
+    /** Creates a grid with a fleet of random cars, every second car is connected to it's own V2G unit and the others are driving.
+     * The output of the grid is discarded, so printing doesn't dominate the measurements.
+     * @param fleet_size How many cars the fleet contains | e.g. 10_000
+     * @param tick_speed The tick speed of the grid | e.g. 1
+     * @param profile_mix The charging profiles of the cars: default, work or mixed (all profiles round robin)
+     * @param mode The operating mode of the grid: serial, parallel, columnar or event
+     * @param seed The seed of the grid
+     * @return The simulation
+     */
+    static Simulation create(int fleet_size, int tick_speed, String profile_mix, String mode, long seed) {
+        try {
+            return (Simulation) Class.forName("Simulation_Fixture")
+                    .getDeclaredConstructor(int.class, int.class, String.class, String.class, long.class)
+                    .newInstance(fleet_size, tick_speed, profile_mix, mode, seed);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The simulation fixture could not be created.", e);
+        }
+    }
+
+    /**
+     * Sends every idle car on a new route and restores the charge status of the connected cars,
+     * so each iteration measures a comparable fleet.
+     */
+    void reset();
+
+    /** Operates the grid for a specified amount of time
+     * @param minutes How many minutes the grid should operate
+     */
+    void operate(int minutes);
+
+    /**
+     * Ticks every car once and manages the connected cars.
+     */
+    void manage_cars();
+
+    /** Charges every connected car for one tick
+     * @return The charged energy in kWh
+     */
+    double tick_charge();
+
+    /** Discharges every connected car for one tick
+     * @return The discharged energy in kWh
+     */
+    double tick_discharge();
+
+    /** Calculates the charging priority of every connected car
+     * @return The sum of the priority ordinals, consumed by the benchmark
+     */
+    int charging_priorities();
+
+    /** Builds the electricity snapshot of a day into the reused buffer snapshot
+     * @param day The day | e.g. 3
+     * @return The total energy of the day
+     */
+    int[] build_snapshot(int day);
+
+    /** Returns the cached electricity snapshot of a day
+     * @param day The day | e.g. 3
+     * @return The total energy of the day
+     */
+    int[] cached_snapshot(int day);
+}
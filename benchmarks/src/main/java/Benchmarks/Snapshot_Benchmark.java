@@ -0,0 +1,42 @@
+package Benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation of the daily electricity snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Snapshot_Benchmark {
+
+    private Simulation simulation;
+    private int day = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        simulation = Simulation.create(0, 1, "default", "serial", 42);
+    }
+
+    // A new day each time, which includes generating the hourly values of the day
+    @Benchmark
+    public int[] build_new_day() {
+        return simulation.build_snapshot(day++);
+    }
+
+    // The same day each time, the hourly values of the day are cached
+    @Benchmark
+    public int[] rebuild_day() {
+        return simulation.build_snapshot(0);
+    }
+
+    @Benchmark
+    public int[] cached_snapshot() {
+        return simulation.cached_snapshot(0);
+    }
+}
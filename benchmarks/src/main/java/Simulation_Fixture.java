@@ -0,0 +1,134 @@
+import Benchmarks.Simulation;
+import Services.Clock;
+import Services.Out;
+import Services.Random_Streams;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Default package implementation of the benchmark view, which can access the package private parts of the simulation.
+ * @see Simulation#create(int, int, String, String, long)
+ */
+public class Simulation_Fixture implements Simulation {
+
+    private final Grid grid;
+    private final Electric_Car[] driving_cars; // Cars that are sent on routes
+    private final Electric_Car[] connected_cars; // Cars that stay connected to their V2G unit
+    private final V2G_Unit[] v2g_units; // The V2G unit of each connected car
+    private final double[] initial_charge_status; // The charge status of each connected car after the setup
+    private final SplittableRandom random;
+
+    private final Electricity_Grid electricity_grid; // Used for the snapshot benchmarks
+    private Electricity_Grid.Electricity_Snapshot snapshot_buffer;
+
+    public Simulation_Fixture(int fleet_size, int tick_speed, String profile_mix, String mode, long seed) {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        random = new SplittableRandom(seed);
+        grid = new Grid(new Electricity_Grid.Distribution(70, 50), seed);
+        grid.setTick_speed(tick_speed);
+
+        Electric_Car.ChargingProfile[] profiles = switch (profile_mix) {
+            case "default" -> new Electric_Car.ChargingProfile[]{Electric_Car.ChargingProfile.DEFAULT_PROFILE};
+            case "work" -> new Electric_Car.ChargingProfile[]{Electric_Car.ChargingProfile.WORK_PROFILE};
+            case "mixed" -> Electric_Car.ChargingProfile.values();
+            default -> throw new IllegalArgumentException("Unknown profile mix: " + profile_mix);
+        };
+
+        ArrayList<Electric_Car> driving = new ArrayList<>(), connected = new ArrayList<>();
+        ArrayList<V2G_Unit> units = new ArrayList<>();
+        for (int i = 0; i < fleet_size; i++) {
+            Electric_Car electric_car = Models.Random("Benchmark", "B | M | " + i, grid, Out.Log_Level.NONE);
+            electric_car.charging_profile = profiles[i % profiles.length];
+            electric_car.setCharge_status(20 + random.nextInt(80));
+            if (i % 2 == 0) {
+                driving.add(electric_car);
+            } else {
+                V2G_Unit v2g_unit = new V2G_Unit(i % 4 == 1 ? 150 : 22, grid, Out.Log_Level.NONE);
+                electric_car.connectToV2GUnit(v2g_unit);
+                connected.add(electric_car);
+                units.add(v2g_unit);
+            }
+        }
+        driving_cars = driving.toArray(Electric_Car[]::new);
+        connected_cars = connected.toArray(Electric_Car[]::new);
+        v2g_units = units.toArray(V2G_Unit[]::new);
+        initial_charge_status = new double[connected_cars.length];
+        for (int i = 0; i < connected_cars.length; i++) {
+            initial_charge_status[i] = connected_cars[i].getCharge_status();
+        }
+
+        switch (mode) {
+            case "serial" -> { }
+            case "parallel" -> grid.setParallel_ticks(true);
+            case "columnar" -> grid.setColumnar_fleet(true);
+            case "event" -> grid.setEvent_driven(true);
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        // operate() starts the day on it's own, manage_cars() is measured without operate() and needs the snapshot
+        grid.restore_snapshot(Clock.day(grid.time.asEpochMinute()));
+
+        electricity_grid = new Electricity_Grid(new Random_Streams(seed), new Snapshot_Cache());
+        reset();
+    }
+
+    @Override
+    public void reset() {
+        for (Electric_Car electric_car : driving_cars) {
+            if (electric_car.state.getDescriptor() == Electric_Car.State.Descriptor.IDLE) electric_car.drive(20 + random.nextInt(280));
+        }
+        for (int i = 0; i < connected_cars.length; i++) {
+            connected_cars[i].setCharge_status(initial_charge_status[i]);
+        }
+    }
+
+    @Override
+    public void operate(int minutes) {
+        grid.operate(minutes);
+    }
+
+    @Override
+    public void manage_cars() {
+        grid.manage_cars();
+    }
+
+    @Override
+    public double tick_charge() {
+        double energy = 0.0;
+        for (V2G_Unit v2g_unit : v2g_units) {
+            energy += v2g_unit.tick_charge();
+        }
+        return energy;
+    }
+
+    @Override
+    public double tick_discharge() {
+        double energy = 0.0;
+        for (V2G_Unit v2g_unit : v2g_units) {
+            energy += v2g_unit.tick_discharge();
+        }
+        return energy;
+    }
+
+    @Override
+    public int charging_priorities() {
+        int sum = 0;
+        for (Electric_Car electric_car : connected_cars) {
+            sum += electric_car.get_charging_priority().ordinal();
+        }
+        return sum;
+    }
+
+    @Override
+    public int[] build_snapshot(int day) {
+        snapshot_buffer = electricity_grid.getSnapshot(grid.energy_distribution, day, snapshot_buffer);
+        return snapshot_buffer.getTotal_energy();
+    }
+
+    @Override
+    public int[] cached_snapshot(int day) {
+        return electricity_grid.getSnapshot(grid.energy_distribution, day).getTotal_energy();
+    }
+}
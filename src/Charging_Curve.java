@@ -0,0 +1,254 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The piecewise charging curve of a car / charger combination.
+ * Curves are shared between all V2G units that charge the same kind of car with the same effective charge rate,
+ * which allows the charging duration to be calculated per curve segment instead of per tick.
+ * The energy and percentage of one tick are memoized per tick speed, a charging tick is a lookup of it's segment.
+ * @see V2G_Unit
+ */
+public class Charging_Curve {
+
+    // Charging curve similar to: (Blue bar stretched) https://forococheselectricos.com/wp-content/uploads/2019/08/Charge-curve-Model-SX-LR-CCS.png
+    // Below array defines the charging curve, one entry per 10% of charge status
+    // Tl;DR Model S with 150W: 0 -> 20 in ~10min, 0 -> 50 in ~20min, 0 -> 100 in ~70min
+    static final double[] CHARGE_SPEED_REDUCTION = {0.50, 0.85, 0.90, 0.95, 0.775, 0.60, 0.425, 0.38, 0.36, 0.35, 0.0};
+
+    static final double DISCHARGE_LOSS = 0.1; // 10% of energy is lost when discharging
+
+    // Tolerance used to detect segment crossings that are too close to call without simulating each tick
+    private static final double CROSSING_TOLERANCE = 1e-6;
+
+    // Stores every curve that was requested so far with its (effective charge rate, capacity) pair
+    private static final ConcurrentHashMap<Key, Charging_Curve> curves = new ConcurrentHashMap<>();
+
+    public final double effective_charge_rate; // The charge rate of the car / charger combination in kW | e.g. 150kW
+    public final double capacity; // The capacity of the car in kWh | e.g. 85.0
+    final double discharge; // The energy that is discharged per minute in kWh, the discharge rate is 20% slower than the charge rate
+
+    private final double[] segment_rates = new double[CHARGE_SPEED_REDUCTION.length]; // The reduced charging rate of each segment in kW
+    private final ConcurrentHashMap<Integer, Tick_Table> tick_tables = new ConcurrentHashMap<>(); // The table of every requested tick speed
+    private volatile Tick_Table tick_table; // The last requested table, checked first as a grid keeps it's tick speed
+
+    private Charging_Curve(double effective_charge_rate, double capacity) {
+        this.effective_charge_rate = effective_charge_rate;
+        this.capacity = capacity;
+        this.discharge = effective_charge_rate * 0.8 / 60 * 1;
+        for (int i = 0; i < segment_rates.length; i++) {
+            // Charging curve does not apply if the charging_rate is less than 10kW (btw what is wrong with VW?? Max 3.6kW is super slow...)
+            segment_rates[i] = (effective_charge_rate > 10.0 ? CHARGE_SPEED_REDUCTION[i] : 1.0) * effective_charge_rate;
+        }
+    }
+
+    /** Returns the shared curve for the specified combination, the curve is created upon first request.
+     * @param effective_charge_rate The lower charge rate of the car and the charger in kW | e.g. 150kW
+     * @param capacity The capacity of the car in kWh | e.g. 85.0
+     * @return The matching Charging_Curve
+     */
+    static Charging_Curve of(double effective_charge_rate, double capacity) {
+        return curves.computeIfAbsent(new Key(effective_charge_rate, capacity), key -> new Charging_Curve(key.effective_charge_rate, key.capacity));
+    }
+
+    /** Calculates the energy that is charged during one tick
+     * @param charge_status The charge status at the start of the tick in % | e.g. 42.0
+     * @param tick_speed The tick speed of the grid
+     * @return The charged energy in kWh
+     */
+    double charge(double charge_status, int tick_speed) {
+        return charge_status != 100.0 ? tick_table(tick_speed).energy[(int) (charge_status / 10)] : 0.0;
+    }
+
+    /** Returns the memoized charging of one tick, the table is built once per tick speed upon first request.
+     * Curves are shared by every grid, grids with different tick speeds keep using their own tables side by side.
+     * Tables are immutable, so concurrent ticks share them without locking.
+     * @param tick_speed The tick speed of the grid
+     * @return The table of the tick speed
+     */
+    Tick_Table tick_table(int tick_speed) {
+        Tick_Table table = tick_table;
+        if (table == null || table.tick_speed != tick_speed) {
+            table = tick_tables.get(tick_speed);
+            if (table == null) table = tick_tables.computeIfAbsent(tick_speed, speed -> new Tick_Table(speed));
+            tick_table = table;
+        }
+        return table;
+    }
+
+    /** Calculates the charge status after the specified energy was charged
+     * @param charge_status The charge status before charging in % | e.g. 42.0
+     * @param charge The charged energy in kWh
+     * @return The new charge status in % (at most 100%)
+     */
+    double charge_status_after(double charge_status, double charge) {
+        return Math.min(((capacity * (charge_status / 100)) + (charge)) / capacity * 100, 100.0);
+    }
+
+    /** Calculates how many whole minutes can be discharged during one tick, in one step instead of minute by minute.
+     * A minute is discharged if the charge status stays above the floor (and 0%) and the fed energy stays within the
+     * limit. The limits are solved for the minutes and the estimate is corrected with the exact checks.
+     * @param charge_status The charge status at the start of the tick in % | e.g. 64.0
+     * @param floor The charge status that must not be undercut in % | e.g. 30.0
+     * @param max_energy The maximal energy that should be fed into the grid in kWh | e.g. 12.5
+     * @param tick_speed The tick speed of the grid
+     * @return The discharged minutes, at most the tick speed
+     * @see V2G_Unit#discharge_floor()
+     */
+    int discharge_minutes(double charge_status, double floor, double max_energy, int tick_speed) {
+        double lowest = Math.max(floor, 0.0);
+        double estimate = Math.min(capacity * ((charge_status - lowest) / 100) / discharge, max_energy / (discharge * (1 - DISCHARGE_LOSS)));
+        int minutes = estimate > 0.0 ? (int) Math.min(estimate, tick_speed) : 0;
+
+        while (minutes > 0 && !can_discharge(charge_status, lowest, max_energy, minutes)) minutes--;
+        while (minutes < tick_speed && can_discharge(charge_status, lowest, max_energy, minutes + 1)) minutes++;
+        return minutes;
+    }
+
+    private boolean can_discharge(double charge_status, double lowest, double max_energy, int minutes) {
+        return discharge_status_after(charge_status, minutes) >= lowest && discharge_energy(minutes) <= max_energy;
+    }
+
+    /** Calculates the charge status after discharging
+     * @param charge_status The charge status before discharging in % | e.g. 64.0
+     * @param minutes The discharged minutes
+     * @return The new charge status in %
+     */
+    double discharge_status_after(double charge_status, int minutes) {
+        return ((capacity * (charge_status / 100)) - (minutes * discharge)) / capacity * 100;
+    }
+
+    /** Sums up the energy of the discharged minutes one by one, which equals the total of a per minute discharge exactly
+     * (a product rounds differently)
+     * @param minutes The discharged minutes
+     * @return The energy that is fed into the grid in kWh (the discharged energy without the loss)
+     */
+    double discharge_energy(int minutes) {
+        double total = 0.0;
+        for (int i = 0; i < minutes; i++) total += discharge;
+        return total * (1 - DISCHARGE_LOSS);
+    }
+
+    /** Returns the lowest charge status from which charging for the specified ticks still reaches a contracted charge
+     * status, every higher charge status reaches it as well.
+     * @param contracted_charge_status The charge status that has to be reached in % | e.g. 80
+     * @param ticks How many ticks are left for charging | e.g. 30
+     * @param tick_speed The tick speed of the grid
+     * @return The charge status in %
+     */
+    double contract_floor(int contracted_charge_status, int ticks, int tick_speed) {
+        double[] floors = tick_table(tick_speed).contract_floors(contracted_charge_status);
+        return floors[Math.min(ticks, floors.length - 1)];
+    }
+
+    /** Returns how many ticks of charging a charge status needs at most to reach a contracted charge status
+     * @param contracted_charge_status The charge status that has to be reached in % | e.g. 80
+     * @param charge_status The charge status in % | e.g. 42.0
+     * @param tick_speed The tick speed of the grid
+     * @return The fewest ticks whose floor the charge status doesn't undercut, Integer.MAX_VALUE if it never reaches it
+     * @see #contract_floor(int, int, int)
+     */
+    int contract_ticks(int contracted_charge_status, double charge_status, int tick_speed) {
+        double[] floors = tick_table(tick_speed).contract_floors(contracted_charge_status);
+        // The floors fall with more ticks, the first one that the charge status doesn't undercut is searched
+        int low = 0, high = floors.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (floors[middle] <= charge_status) high = middle;
+            else low = middle + 1;
+        }
+        return low < floors.length ? low : Integer.MAX_VALUE;
+    }
+
+    /** Calculates how many minutes are needed to charge from one charge status to another if constantly charged.
+     * Each curve segment is solved in one step, the result equals charging tick by tick with the specified tick speed.
+     * @param from The charge status at the start in % | e.g. 35.0
+     * @param up_to The charge status that should be reached in % | e.g. 80.0
+     * @param tick_speed The tick speed of the grid
+     * @return The charging duration in minutes (a multiple of the tick speed)
+     */
+    int charging_duration(double from, double up_to, int tick_speed) {
+        if (up_to > 100.0) throw new IllegalArgumentException("A charge status above 100% can never be reached.");
+
+        double charge_status = from;
+        int ticks = 0;
+        while (charge_status < up_to) {
+            int segment = (int) (charge_status / 10);
+            double step = tick_table(tick_speed).step[segment]; // The charged percentage per tick in this segment
+            double target = Math.min(up_to, (segment + 1) * 10);
+
+            // Ticks needed to leave the segment or reach the target, falls back to the tick loop if a crossing is ambiguous
+            double exact_ticks = (target - charge_status) / step;
+            if (Math.abs(exact_ticks - Math.rint(exact_ticks)) < CROSSING_TOLERANCE) return simulate_duration(from, up_to, tick_speed);
+            int segment_ticks = Math.max((int) Math.ceil(exact_ticks), 1);
+
+            charge_status = Math.min(charge_status + segment_ticks * step, 100.0);
+            ticks += segment_ticks;
+
+            boolean near_boundary = charge_status < 100.0 && Math.abs(charge_status / 10 - Math.rint(charge_status / 10)) < CROSSING_TOLERANCE;
+            if (near_boundary || Math.abs(charge_status - up_to) < CROSSING_TOLERANCE) return simulate_duration(from, up_to, tick_speed);
+        }
+        return ticks * tick_speed;
+    }
+
+    /** Calculates the charging duration by charging tick by tick.
+     * @see #charging_duration(double, double, int)
+     */
+    int simulate_duration(double from, double up_to, int tick_speed) {
+        double charge_status = from;
+        int duration = 0;
+        while (charge_status < up_to) {
+            charge_status = charge_status_after(charge_status, charge(charge_status, tick_speed));
+            duration += tick_speed;
+        }
+        return duration;
+    }
+
+    /**
+     * The energy and the percentage that is charged during one tick in each segment of the curve for one tick speed.
+     * The rate is constant within a segment, so the table is exact and no interpolation is needed.
+     */
+    final class Tick_Table {
+        final int tick_speed;
+        final double[] energy = new double[segment_rates.length]; // The charged energy per segment in kWh
+        final double[] step = new double[segment_rates.length]; // The charged percentage per segment in %
+        private final ConcurrentHashMap<Integer, double[]> contract_floors = new ConcurrentHashMap<>(); // The floors of every requested contracted charge status
+
+        private Tick_Table(int tick_speed) {
+            this.tick_speed = tick_speed;
+            for (int i = 0; i < segment_rates.length; i++) {
+                energy[i] = segment_rates[i] / 60 * (tick_speed);
+                step[i] = energy[i] / capacity * 100;
+            }
+        }
+
+        /** Returns the floors of a contracted charge status, built once upon first request
+         * @param contracted_charge_status The charge status that has to be reached in % | e.g. 80
+         * @return The floor for each number of ticks that are left, until the floor stops falling
+         */
+        double[] contract_floors(int contracted_charge_status) {
+            return contract_floors.computeIfAbsent(contracted_charge_status, this::build_floors);
+        }
+
+        /** Walks back from the contracted charge status one tick at a time. A tick charges the step of the segment it starts
+         * in, and the steps shrink towards 100%, so the floor of a tick is the highest charge status of any segment whose
+         * step falls short of the floor of the next tick.
+         */
+        private double[] build_floors(int contracted_charge_status) {
+            double[] floors = new double[24 * 60 / tick_speed + 2];
+            floors[0] = contracted_charge_status + 1e-9; // Rounding of the charge status never ends below the contract
+            int ticks = 1;
+            for (; ticks < floors.length && floors[ticks - 1] > 0.0; ticks++) {
+                double floor = 0.0;
+                for (int segment = 0; segment < step.length - 1; segment++) {
+                    double lowest = floors[ticks - 1] - step[segment]; // The lowest start within the segment that still reaches it
+                    if (lowest > segment * 10) floor = Math.max(floor, Math.min(lowest, (segment + 1) * 10));
+                }
+                floors[ticks] = floor;
+                if (floor >= floors[ticks - 1]) break; // Without charging the floor never falls
+            }
+            return Arrays.copyOf(floors, Math.min(ticks + 1, floors.length));
+        }
+    }
+
+    private record Key(double effective_charge_rate, double capacity) { }
+}
@@ -0,0 +1,218 @@
+import Services.Out;
+import Services.Random_Stream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Stores the complete state of a grid in a compact binary file and restores it, so what-if scenarios can start from a
+ * shared warm state instead of simulating weeks of ticks again.
+ * A checkpoint contains the time, the distribution, the log level, the operating modes, the state of every random stream,
+ * every V2G unit and every car (including it's state and connection) as well as the day ahead schedule. The electricity snapshot only
+ * depends on the seed and the day, so it is rebuilt instead of being stored. A journal is not part of a checkpoint.
+ * @see Grid
+ */
+public class Checkpoint {
+
+    private static final int MAGIC = 0x56324743; // "V2GC"
+    private static final int VERSION = 4; // Version 2 added the grid power, version 3 the day ahead schedule, version 4 the log level of the grid
+
+    private Checkpoint() { }
+
+    /** Writes the state of the grid into a file, a existing file is overwritten
+     * @param grid The grid
+     * @param path The path of the checkpoint | e.g. Path.of("week_1.v2gc")
+     * @throws IOException if the file can't be written
+     */
+    public static void write(Grid grid, Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+
+            // Grid
+            out.writeLong(grid.random_streams.getSeed());
+            Electricity_Grid.Distribution distribution = grid.energy_distribution;
+            out.writeBoolean(distribution.weak_distribution);
+            if (distribution.weak_distribution) {
+                out.writeInt(distribution.renewable_energy);
+                out.writeInt(distribution.nonrenewable_energy);
+            } else {
+                out.writeInt(distribution.wind);
+                out.writeInt(distribution.pv);
+                out.writeInt(distribution.water);
+                out.writeInt(distribution.nuclear);
+                out.writeInt(distribution.coal);
+            }
+            out.writeByte(grid.log_level.ordinal());
+            out.writeLong(grid.time.asEpochMinute());
+            out.writeInt(grid.getTick_speed());
+            out.writeBoolean(grid.isParallel_ticks());
+            out.writeBoolean(grid.isColumnar_fleet());
+            out.writeBoolean(grid.isEvent_driven());
+            out.writeLong(grid.id_random.getState());
+            out.writeLong(grid.model_random.getState());
+            out.writeInt(grid.created_cars);
+            out.writeInt(grid.getSnapshot_day());
+            out.writeDouble(grid.getGrid_power());
+
+            // V2G units
+            out.writeInt(grid.v2g_units.size());
+            for (V2G_Unit v2g_unit : grid.v2g_units) {
+                out.writeUTF(v2g_unit.grid_id);
+                out.writeDouble(v2g_unit.charging_rate);
+                out.writeByte(v2g_unit.log_level.ordinal());
+            }
+
+            // Electric cars
+            out.writeInt(grid.electric_cars.size());
+            for (Electric_Car electric_car : grid.electric_cars) {
+                out.writeUTF(electric_car.grid_id);
+                out.writeUTF(electric_car.owner);
+                out.writeUTF(electric_car.license_plate);
+                out.writeInt(electric_car.ps);
+                out.writeUTF(electric_car.brand);
+                out.writeUTF(electric_car.model_name);
+                out.writeDouble(electric_car.getCapacity());
+                out.writeDouble(electric_car.energy_consumption);
+                out.writeDouble(electric_car.max_charge_rate);
+                out.writeByte(electric_car.log_level.ordinal());
+                out.writeLong(electric_car.random.getState());
+                out.writeDouble(electric_car.getCharge_status());
+                out.writeDouble(electric_car.getSpeed());
+                out.writeByte(electric_car.charging_profile.ordinal());
+
+                Electric_Car.State state = electric_car.state;
+                out.writeByte(state.getDescriptor().ordinal());
+                out.writeDouble(state.getTotal_route_length());
+                out.writeDouble(state.getRemaining_route_length());
+                out.writeDouble(state.getRemaining_time_penalty());
+                out.writeInt(electric_car.v2g_unit != null ? grid.v2g_units.indexOf(electric_car.v2g_unit.grid_id) : -1);
+            }
+
+            // Day ahead schedule, only the cars that are still scheduled are stored (by their registry index)
+            out.writeBoolean(grid.isDay_ahead());
+            Day_Ahead_Scheduler.Schedule schedule = grid.isDay_ahead() ? grid.getDay_ahead_scheduler().getSchedule() : null;
+            out.writeBoolean(schedule != null);
+            if (schedule != null) {
+                out.writeInt(schedule.day);
+                out.writeInt(schedule.tick_speed);
+                out.writeInt(schedule.ticks());
+                Electric_Car[] fleet = grid.electric_cars.elements();
+                for (int i = 0; i < grid.electric_cars.size(); i++) out.writeBoolean(fleet[i].scheduled_day == schedule.day);
+                for (int tick = 0; tick < schedule.ticks(); tick++) {
+                    int entries = 0;
+                    for (int entry = schedule.from(tick); entry < schedule.to(tick); entry++) {
+                        if (schedule.getElectric_car(entry).scheduled_day == schedule.day) entries++;
+                    }
+                    out.writeInt(entries);
+                    for (int entry = schedule.from(tick); entry < schedule.to(tick); entry++) {
+                        Electric_Car electric_car = schedule.getElectric_car(entry);
+                        if (electric_car.scheduled_day != schedule.day) continue;
+                        out.writeInt(grid.electric_cars.indexOf(electric_car.grid_id));
+                        out.writeDouble(schedule.getEnergy(entry));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Restores a grid from a checkpoint. The restored grid continues exactly like the grid that was written.
+     * @param path The path of the checkpoint
+     * @return The restored grid
+     * @throws IOException if the file can't be read or is not a checkpoint
+     */
+    public static Grid read(Path path) throws IOException {
+        return read(path, new Snapshot_Cache());
+    }
+
+    /** Restores a grid from a checkpoint that shares the snapshots of it's days with other grids, e.g. when many what-if
+     * scenarios start from the same checkpoint.
+     * @param path The path of the checkpoint
+     * @param snapshot_cache The cache of the snapshots
+     * @return The restored grid
+     * @throws IOException if the file can't be read or is not a checkpoint
+     * @see #read(Path)
+     */
+    public static Grid read(Path path, Snapshot_Cache snapshot_cache) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC) throw new IOException(String.format("%s is not a checkpoint.", path));
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) throw new IOException(String.format("%s has a unsupported checkpoint version.", path));
+
+            // Grid
+            long seed = in.readLong();
+            Electricity_Grid.Distribution distribution = in.readBoolean() ?
+                    new Electricity_Grid.Distribution(in.readInt(), in.readInt()) :
+                    new Electricity_Grid.Distribution(in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            Out.Log_Level[] log_levels = Out.Log_Level.values();
+            Out.Log_Level grid_log_level = version >= 4 ? log_levels[in.readByte()] : Out.Log_Level.ALL; // Older checkpoints used the default
+            Grid grid = new Grid(distribution, seed, grid_log_level, snapshot_cache);
+            long epoch_minute = in.readLong();
+            grid.setTick_speed(in.readInt());
+            boolean parallel_ticks = in.readBoolean(), columnar_fleet = in.readBoolean(), event_driven = in.readBoolean();
+            long id_random_state = in.readLong(), model_random_state = in.readLong();
+            int created_cars = in.readInt();
+            int snapshot_day = in.readInt();
+            if (version >= 2) grid.setGrid_power(in.readDouble());
+
+            // V2G units
+            V2G_Unit[] v2g_units = new V2G_Unit[in.readInt()];
+            for (int i = 0; i < v2g_units.length; i++) {
+                String grid_id = in.readUTF();
+                double charging_rate = in.readDouble();
+                v2g_units[i] = new V2G_Unit(charging_rate, grid, log_levels[in.readByte()], grid_id);
+            }
+
+            // Electric cars, the cars are restored before the columnar fleet is attached
+            Electric_Car.ChargingProfile[] charging_profiles = Electric_Car.ChargingProfile.values();
+            int cars = in.readInt();
+            for (int i = 0; i < cars; i++) {
+                String grid_id = in.readUTF();
+                String owner = in.readUTF(), license_plate = in.readUTF();
+                int ps = in.readInt();
+                String brand = in.readUTF(), model_name = in.readUTF();
+                double capacity = in.readDouble(), energy_consumption = in.readDouble(), max_charge_rate = in.readDouble();
+                Out.Log_Level log_level = log_levels[in.readByte()];
+                Random_Stream random = new Random_Stream(in.readLong());
+                Electric_Car electric_car = new Electric_Car(owner, license_plate, ps, brand, model_name, capacity, energy_consumption, max_charge_rate, grid, log_level, grid_id, random);
+
+                electric_car.setCharge_status(in.readDouble());
+                electric_car.setSpeed(in.readDouble());
+                electric_car.charging_profile = charging_profiles[in.readByte()];
+                electric_car.state.restore(Electric_Car.State.Descriptor.BY_ORDINAL[in.readByte()], in.readDouble(), in.readDouble(), in.readDouble());
+                int v2g_unit = in.readInt();
+                if (v2g_unit != -1) v2g_units[v2g_unit].connectElectricCar(electric_car);
+            }
+
+            grid.time.addTime((int) (epoch_minute - grid.time.asEpochMinute()));
+            grid.id_random.setState(id_random_state);
+            grid.model_random.setState(model_random_state);
+            grid.created_cars = created_cars;
+
+            // Day ahead schedule, it is restored before the snapshot so the scheduler doesn't plan the day again
+            if (version >= 3 && in.readBoolean()) {
+                grid.setDay_ahead(true);
+                if (in.readBoolean()) {
+                    Electric_Car[] fleet = grid.electric_cars.elements();
+                    int day = in.readInt(), tick_speed = in.readInt(), ticks = in.readInt();
+                    for (int i = 0; i < cars; i++) {
+                        if (in.readBoolean()) fleet[i].scheduled_day = day;
+                    }
+                    Day_Ahead_Scheduler.Schedule.Builder builder = new Day_Ahead_Scheduler.Schedule.Builder(day, tick_speed, ticks);
+                    for (int tick = 0; tick < ticks; tick++) {
+                        int entries = in.readInt();
+                        for (int entry = 0; entry < entries; entry++) builder.add(tick, fleet[in.readInt()], in.readDouble());
+                    }
+                    grid.getDay_ahead_scheduler().setSchedule(builder.build());
+                }
+            }
+            if (snapshot_day != -1) grid.restore_snapshot(snapshot_day);
+
+            grid.setParallel_ticks(parallel_ticks);
+            grid.setColumnar_fleet(columnar_fleet);
+            grid.setEvent_driven(event_driven);
+            return grid;
+        }
+    }
+}
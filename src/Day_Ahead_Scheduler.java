@@ -0,0 +1,489 @@
+import Services.Clock;
+
+import java.util.Arrays;
+
+/**
+ * Plans the charging and discharging of the connected cars for the rest of the day at once, instead of deciding tick by tick.
+ * The electricity snapshot of the whole day is known at midnight, so cars can be charged in the ticks with the largest
+ * surplus and feed energy back in the ticks with the deepest deficit.
+ * The solver is a greedy algorithm with lookahead that plans one car after another (by priority, then in the order of the
+ * fleet), each car works on the residual balance the cars before it left:
+ * 1. A car below it's min charge status is charged as fast as possible.
+ * 2. Each contracted time is met by charging in the ticks before it with the largest residual surplus.
+ * 3. The deficit ticks of the grid are covered from the deepest one on by discharging, as long as the min charge status and
+ *    every later contract stay fulfilled. If the car lacks energy for it, it is charged with the whole residual surplus of
+ *    earlier ticks first.
+ * The charge levels of the car are kept in a segment tree, every check of the later ticks costs O(log n).
+ * While the grid operates a tick only looks up the planned energy of it's cars, the rest of the balance is dispatched tick
+ * by tick in the order of the priorities (scheduled cars only offer the rest of their tick). Cars that fell below their min
+ * charge status are charged at all costs.
+ * @see Grid#setDay_ahead(boolean)
+ * @see Dispatcher
+ */
+public class Day_Ahead_Scheduler {
+
+    private final Grid grid; // The grid whose cars are planned
+    private Schedule schedule; // The plan of the current day, null if none was made yet
+
+    // Buffers of the solver, one entry per tick of the day
+    private double[] residual = new double[0]; // The residual balance of each tick in kWh, positive for a surplus
+    private double[] deficit = new double[0]; // The deficit of the grid in each tick that no planned discharge covers yet in kWh
+    private double[] plan = new double[0]; // The planned energy of the current car in kWh, negative for discharging
+    private long[] order = new long[0]; // The ticks sorted by their residual balance (ascending), in the lower 32 bits
+    private Charge_Levels charge_levels = new Charge_Levels(0);
+    private Surplus surplus = new Surplus(0);
+
+    Day_Ahead_Scheduler(Grid grid) {
+        this.grid = grid;
+    }
+
+    /** Plans every connected car from the current tick up to the end of the day
+     * @param snapshot The electricity snapshot of the day
+     */
+    void plan(Electricity_Grid.Electricity_Snapshot snapshot) {
+        int tick_speed = grid.getTick_speed();
+        int ticks = (24 * 60 + tick_speed - 1) / tick_speed;
+        int first = grid.time.inMinutesWithHoursIsolated() / tick_speed;
+        if (residual.length < ticks) {
+            residual = new double[ticks];
+            deficit = new double[ticks];
+            plan = new double[ticks];
+            order = new long[ticks];
+            charge_levels = new Charge_Levels(ticks + 1);
+            surplus = new Surplus(ticks);
+        }
+        for (int tick = first; tick < ticks; tick++) {
+            // The same balance the dispatcher works with
+            residual[tick] = snapshot.getTotal_energy()[tick * tick_speed] * grid.getGrid_power() / 100 / 60 * tick_speed;
+            deficit[tick] = Math.max(-residual[tick], 0.0);
+        }
+
+        Schedule.Builder builder = new Schedule.Builder(Clock.day(grid.time.asEpochMinute()), tick_speed, ticks);
+        Electric_Car[] fleet = grid.electric_cars.elements();
+        for (Electric_Car.ChargingPriority charging_priority : Electric_Car.ChargingPriority.values()) {
+            for (int index = grid.priority_buckets.next(charging_priority, 0); index >= 0; index = grid.priority_buckets.next(charging_priority, index + 1)) {
+                Electric_Car electric_car = fleet[index];
+                plan_car(electric_car, first, ticks, tick_speed);
+                for (int tick = first; tick < ticks; tick++) {
+                    if (plan[tick] != 0.0) builder.add(tick, electric_car, plan[tick]);
+                }
+                electric_car.scheduled_day = builder.day;
+            }
+        }
+        schedule = builder.build();
+    }
+
+    /** Plans one car and subtracts it's energy from the residual balance
+     * @param electric_car The connected car
+     * @param first The first tick of the plan
+     * @param ticks The ticks of the day
+     * @param tick_speed The tick speed of the grid
+     */
+    private void plan_car(Electric_Car electric_car, int first, int ticks, int tick_speed) {
+        Arrays.fill(plan, first, ticks, 0.0);
+        Charging_Curve charging_curve = electric_car.v2g_unit.getCharging_curve();
+        double capacity = electric_car.getCapacity();
+        double min_level = capacity * electric_car.charging_profile.min_charge_status / 100;
+        double discharge = charging_curve.discharge; // Discharged energy per minute
+        double fed_discharge = charging_curve.discharge_energy(1);
+
+        // The charge level at the start of each tick must stay above the requirement, contracts raise it at their time
+        charge_levels.reset(first, ticks, capacity * (electric_car.getCharge_status() / 100), min_level);
+        int[] contracted_times = electric_car.charging_profile.contracted_times;
+        if (contracted_times != null && electric_car.charging_profile.contracted_charge_status != null) {
+            double contracted_level = capacity * electric_car.charging_profile.contracted_charge_status / 100;
+            for (int hour : contracted_times) {
+                int tick = hour * 60 / tick_speed;
+                if (tick > first && tick <= ticks) charge_levels.require(tick, Math.max(min_level, contracted_level));
+            }
+        }
+
+        // The residual balance is the sort key in the upper 32 bits (as a float whose bits sort like a int), equal ones by tick
+        for (int tick = first; tick < ticks; tick++) {
+            int bits = Float.floatToIntBits((float) residual[tick]);
+            order[tick - first] = (long) (bits ^ (bits >> 31) & 0x7fffffff) << 32 | tick;
+        }
+        Arrays.sort(order, 0, ticks - first);
+
+        // 1. The min charge status is kept at all costs
+        for (int tick = first; tick < ticks && charge_levels.level(tick) < min_level; tick++) {
+            if (charge(charging_curve, capacity, tick, ticks, tick_speed, min_level - charge_levels.level(tick), false) <= 0.0) break;
+        }
+
+        // 2. Every contract is met by charging in the ticks with the largest surplus before it
+        if (contracted_times != null && electric_car.charging_profile.contracted_charge_status != null) {
+            int[] deadlines = Arrays.stream(contracted_times).map(hour -> hour * 60 / tick_speed).filter(tick -> tick > first && tick <= ticks).sorted().toArray();
+            for (int deadline : deadlines) {
+                double needed = charge_levels.requirement(deadline) - charge_levels.level(deadline);
+                for (int i = ticks - first - 1; i >= 0 && needed > 1e-9; i--) {
+                    if ((int) order[i] < deadline) needed -= charge(charging_curve, capacity, (int) order[i], ticks, tick_speed, needed, false);
+                }
+            }
+        }
+
+        // 3. The deficit is covered from the deepest tick on, if energy is missing the car is charged in earlier surplus ticks.
+        // Only the deficit of the grid is covered, discharging for the planned charging of other cars would just lose energy.
+        surplus.reset(residual, first, ticks);
+        for (int i = 0; i < ticks - first && residual[(int) order[i]] < 0; i++) {
+            int tick = (int) order[i];
+            if (plan[tick] != 0.0) continue;
+            int minutes = (int) Math.min(tick_speed, Math.min(-residual[tick], deficit[tick]) / fed_discharge);
+            if (minutes == 0) continue;
+
+            double slack = charge_levels.min_slack(tick + 1, ticks);
+            while (slack < minutes * discharge) {
+                // Charging before the last tick that reaches the capacity would exceed it
+                int surplus_tick = surplus.largest(Math.max(first, charge_levels.last_reaching(capacity - 1e-9)), tick);
+                if (surplus_tick < 0) break;
+                slack += charge(charging_curve, capacity, surplus_tick, ticks, tick_speed, Double.POSITIVE_INFINITY, true);
+                if (slack >= minutes * discharge) surplus.set(surplus_tick, residual[surplus_tick]);
+                else if (capacity - charge_levels.max_level(surplus_tick + 1, ticks) > 1e-9) surplus.set(surplus_tick, 0.0); // The charge rate or the surplus of the tick is used up
+            }
+
+            minutes = (int) Math.min(minutes, Math.floor(slack / discharge));
+            if (minutes > 0) {
+                plan[tick] = -(minutes + 0.5) * fed_discharge; // The limit lets exactly the planned minutes pass
+                residual[tick] += minutes * fed_discharge;
+                deficit[tick] -= minutes * fed_discharge;
+                charge_levels.add(tick + 1, ticks, -minutes * discharge);
+            }
+
+            // The slack of the last point limits every tick, without it and any surplus to charge from the car is done
+            if (charge_levels.min_slack(ticks, ticks) < discharge && surplus.largest(first, ticks) < 0) break;
+        }
+    }
+
+    /** Plans additional charging in a tick, limited by the charging curve and the capacity in every later tick
+     * @param needed The energy that should be charged in kWh
+     * @param surplus_only Whether the residual surplus of the tick may not be exceeded
+     * @return The energy that was planned in kWh
+     */
+    private double charge(Charging_Curve charging_curve, double capacity, int tick, int ticks, int tick_speed, double needed, boolean surplus_only) {
+        if (plan[tick] < 0.0) return 0.0; // A tick either charges or discharges
+        double charge_status = Math.min(charge_levels.level(tick) / capacity * 100, 100.0);
+        double charge = Math.min(charging_curve.charge(charge_status, tick_speed) - plan[tick], capacity - charge_levels.max_level(tick + 1, ticks));
+        charge = Math.min(charge, needed);
+        if (surplus_only) charge = Math.min(charge, residual[tick]);
+        if (charge <= 0.0) return 0.0;
+
+        plan[tick] += charge;
+        residual[tick] -= charge;
+        charge_levels.add(tick + 1, ticks, charge);
+        return charge;
+    }
+
+    /**
+     * @return The schedule of the current day and tick speed, null if there is none
+     */
+    Schedule getSchedule() {
+        if (schedule == null || schedule.day != Clock.day(grid.time.asEpochMinute()) || schedule.tick_speed != grid.getTick_speed()) return null;
+        return schedule;
+    }
+
+    /** Replaces the schedule, e.g. when a checkpoint is restored. The cars are not marked as scheduled.
+     * @param schedule The schedule, null for none
+     */
+    void setSchedule(Schedule schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * The planned energy of every car per tick of one day, stored by tick (compressed rows) so a tick only reads it's own entries.
+     */
+    static class Schedule {
+        final int day; // The planned day
+        final int tick_speed; // The tick speed the plan was made with
+        private final int[] offsets; // The first entry of each tick, one more entry than ticks
+        private final Electric_Car[] electric_cars;
+        private final double[] energy; // The planned energy in kWh, positive for charging, a upper limit of the fed energy if negative
+
+        Schedule(int day, int tick_speed, int[] offsets, Electric_Car[] electric_cars, double[] energy) {
+            this.day = day;
+            this.tick_speed = tick_speed;
+            this.offsets = offsets;
+            this.electric_cars = electric_cars;
+            this.energy = energy;
+        }
+
+        /**
+         * @return The first entry of the tick
+         */
+        int from(int tick) {
+            return tick + 1 < offsets.length ? offsets[tick] : energy.length;
+        }
+
+        /**
+         * @return The entry after the last entry of the tick
+         */
+        int to(int tick) {
+            return tick + 1 < offsets.length ? offsets[tick + 1] : energy.length;
+        }
+
+        int ticks() {
+            return offsets.length - 1;
+        }
+
+        int size() {
+            return energy.length;
+        }
+
+        Electric_Car getElectric_car(int entry) {
+            return electric_cars[entry];
+        }
+
+        double getEnergy(int entry) {
+            return energy[entry];
+        }
+
+        /**
+         * Collects the entries of a schedule in any order of ticks.
+         */
+        static class Builder {
+            final int day, tick_speed;
+            private final int[] counts; // The entries of each tick
+            private int[] ticks = new int[64];
+            private Electric_Car[] electric_cars = new Electric_Car[64];
+            private double[] energy = new double[64];
+            private int size = 0;
+
+            Builder(int day, int tick_speed, int ticks) {
+                this.day = day;
+                this.tick_speed = tick_speed;
+                this.counts = new int[ticks];
+            }
+
+            void add(int tick, Electric_Car electric_car, double energy) {
+                if (size == ticks.length) {
+                    ticks = Arrays.copyOf(ticks, size * 2);
+                    electric_cars = Arrays.copyOf(electric_cars, size * 2);
+                    this.energy = Arrays.copyOf(this.energy, size * 2);
+                }
+                ticks[size] = tick;
+                electric_cars[size] = electric_car;
+                this.energy[size++] = energy;
+                counts[tick]++;
+            }
+
+            /**
+             * @return The schedule with the entries sorted by tick (stable)
+             */
+            Schedule build() {
+                int[] offsets = new int[counts.length + 1];
+                for (int tick = 0; tick < counts.length; tick++) offsets[tick + 1] = offsets[tick] + counts[tick];
+                int[] next = Arrays.copyOf(offsets, counts.length);
+                Electric_Car[] sorted_cars = new Electric_Car[size];
+                double[] sorted_energy = new double[size];
+                for (int i = 0; i < size; i++) {
+                    int entry = next[ticks[i]]++;
+                    sorted_cars[entry] = electric_cars[i];
+                    sorted_energy[entry] = energy[i];
+                }
+                return new Schedule(day, tick_speed, offsets, sorted_cars, sorted_energy);
+            }
+        }
+    }
+
+    /**
+     * A segment tree over the residual surplus of each tick, finds the tick with the largest surplus of a range in O(log n).
+     * Ticks without a surplus are stored as 0.
+     */
+    private static class Surplus {
+        private final int size; // The leaves, a power of two
+        private final double[] largest; // The largest surplus of each node, the leaves start at size
+
+        Surplus(int ticks) {
+            size = Integer.highestOneBit(Math.max(ticks, 1) * 2 - 1);
+            largest = new double[2 * size];
+        }
+
+        /** Stores the surplus of every tick
+         * @param residual The residual balance of each tick in kWh
+         * @param first The first used tick
+         * @param ticks The ticks of the day
+         */
+        void reset(double[] residual, int first, int ticks) {
+            Arrays.fill(largest, 0.0);
+            for (int tick = first; tick < ticks; tick++) largest[size + tick] = Math.max(residual[tick], 0.0);
+            for (int node = size - 1; node > 0; node--) largest[node] = Math.max(largest[2 * node], largest[2 * node + 1]);
+        }
+
+        void set(int tick, double residual) {
+            int node = size + tick;
+            largest[node] = Math.max(residual, 0.0);
+            for (node >>>= 1; node > 0; node >>>= 1) largest[node] = Math.max(largest[2 * node], largest[2 * node + 1]);
+        }
+
+        /**
+         * @param from The first tick (inclusive)
+         * @param to The last tick (exclusive)
+         * @return The tick with the largest surplus of the range (the earliest one if equal), -1 if no tick has a surplus
+         */
+        int largest(int from, int to) {
+            int best = -1;
+            // The nodes that cover the range from left to right, the left and right border are collected separately
+            int right_best = -1;
+            for (int left = from + size, right = to + size; left < right; left >>>= 1, right >>>= 1) {
+                if ((left & 1) == 1) {
+                    if (best < 0 || largest[left] > largest[best]) best = left;
+                    left++;
+                }
+                if ((right & 1) == 1) {
+                    right--;
+                    if (right_best < 0 || largest[right] >= largest[right_best]) right_best = right;
+                }
+            }
+            if (right_best >= 0 && (best < 0 || largest[right_best] > largest[best])) best = right_best;
+            if (best < 0 || largest[best] <= 0.0) return -1;
+
+            while (best < size) best = largest[2 * best] >= largest[2 * best + 1] ? 2 * best : 2 * best + 1;
+            return best - size;
+        }
+    }
+
+    /**
+     * A segment tree over the charge level of one car at the start of each tick (in kWh). Supports adding energy to a range
+     * of ticks and querying the smallest slack (level above the requirement) or the highest level of a range.
+     * The tree is iterative, the energy added to a node is kept pending for it's children until a query passes it.
+     */
+    private static class Charge_Levels {
+        private final int size, height; // The leaves (a power of two) and the levels above them
+        private final double[] min_slack, max_level; // Per node, including the pending energy of the node itself
+        private final double[] pending; // Per inner node, added to both children when pushed
+        private final double[] requirements; // The requirement of each point in kWh
+
+        Charge_Levels(int points) {
+            size = Integer.highestOneBit(Math.max(points, 1) * 2 - 1);
+            height = Integer.numberOfTrailingZeros(size);
+            min_slack = new double[2 * size];
+            max_level = new double[2 * size];
+            pending = new double[size];
+            requirements = new double[size];
+        }
+
+        /** Sets every used point to the same level and requirement, the other points are ignored by every query
+         * @param first The first used point
+         * @param last The last used point (inclusive)
+         */
+        void reset(int first, int last, double level, double requirement) {
+            Arrays.fill(min_slack, size, 2 * size, Double.POSITIVE_INFINITY);
+            Arrays.fill(max_level, size, 2 * size, Double.NEGATIVE_INFINITY);
+            Arrays.fill(pending, 0.0);
+            for (int point = first; point <= last; point++) {
+                requirements[point] = requirement;
+                min_slack[size + point] = level - requirement;
+                max_level[size + point] = level;
+            }
+            for (int node = size - 1; node > 0; node--) pull(node);
+        }
+
+        /** Raises the requirement of one point
+         * @param point The point
+         * @param requirement The new requirement in kWh
+         */
+        void require(int point, double requirement) {
+            push(size + point);
+            min_slack[size + point] -= requirement - requirements[point];
+            requirements[point] = requirement;
+            for (int node = (size + point) >>> 1; node > 0; node >>>= 1) pull(node);
+        }
+
+        double requirement(int point) {
+            return requirements[point];
+        }
+
+        double level(int point) {
+            push(size + point);
+            return max_level[size + point];
+        }
+
+        /** Adds energy to every point of a range
+         * @param from The first point (inclusive)
+         * @param to The last point (inclusive)
+         * @param energy The added energy in kWh, negative to remove energy
+         */
+        void add(int from, int to, double energy) {
+            if (from > to) return;
+            int left = from + size, right = to + 1 + size;
+            push(left);
+            push(right - 1);
+            for (int l = left, r = right; l < r; l >>>= 1, r >>>= 1) {
+                if ((l & 1) == 1) apply(l++, energy);
+                if ((r & 1) == 1) apply(--r, energy);
+            }
+            for (int node = left >>> 1; node > 0; node >>>= 1) pull(node);
+            for (int node = (right - 1) >>> 1; node > 0; node >>>= 1) pull(node);
+        }
+
+        /**
+         * @return The smallest slack of a range (inclusive), infinite if the range is empty
+         */
+        double min_slack(int from, int to) {
+            double slack = Double.POSITIVE_INFINITY;
+            if (from > to) return slack;
+            push(from + size);
+            push(to + size);
+            for (int l = from + size, r = to + 1 + size; l < r; l >>>= 1, r >>>= 1) {
+                if ((l & 1) == 1) slack = Math.min(slack, min_slack[l++]);
+                if ((r & 1) == 1) slack = Math.min(slack, min_slack[--r]);
+            }
+            return slack;
+        }
+
+        /**
+         * @return The highest level of a range (inclusive), negative infinite if the range is empty
+         */
+        double max_level(int from, int to) {
+            double level = Double.NEGATIVE_INFINITY;
+            if (from > to) return level;
+            push(from + size);
+            push(to + size);
+            for (int l = from + size, r = to + 1 + size; l < r; l >>>= 1, r >>>= 1) {
+                if ((l & 1) == 1) level = Math.max(level, max_level[l++]);
+                if ((r & 1) == 1) level = Math.max(level, max_level[--r]);
+            }
+            return level;
+        }
+
+        /**
+         * @param level The level in kWh
+         * @return The last point that reaches the level, -1 if there is none
+         */
+        int last_reaching(double level) {
+            if (max_level[1] < level) return -1;
+            int node = 1;
+            while (node < size) {
+                push_node(node);
+                node = max_level[2 * node + 1] >= level ? 2 * node + 1 : 2 * node;
+            }
+            return node - size;
+        }
+
+        private void apply(int node, double energy) {
+            min_slack[node] += energy;
+            max_level[node] += energy;
+            if (node < size) pending[node] += energy;
+        }
+
+        /**
+         * Recalculates a inner node from it's children.
+         */
+        private void pull(int node) {
+            min_slack[node] = Math.min(min_slack[2 * node], min_slack[2 * node + 1]) + pending[node];
+            max_level[node] = Math.max(max_level[2 * node], max_level[2 * node + 1]) + pending[node];
+        }
+
+        /**
+         * Pushes the pending energy of every ancestor of a leaf down, from the root on.
+         */
+        private void push(int leaf) {
+            for (int shift = height; shift > 0; shift--) push_node(leaf >>> shift);
+        }
+
+        private void push_node(int node) {
+            if (pending[node] == 0.0) return;
+            apply(2 * node, pending[node]);
+            apply(2 * node + 1, pending[node]);
+            pending[node] = 0.0;
+        }
+    }
+}
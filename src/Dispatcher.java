@@ -0,0 +1,298 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Balances the electricity grid each tick by distributing it's surplus or deficit among the connected cars.
+ * Cars with the priority IMMEDIATELY are always charged. A surplus charges the other cars from URGENT to NONE, a deficit
+ * is covered by discharging them from NONE to URGENT (cars with a low priority first). Within a priority the cars are
+ * served in the order of the fleet.
+ * The energy every car can take / provide during the tick is summed up in dispatch order until the budget is exceeded, a
+ * binary search over these prefix sums finds the last car that can be served completely. The next car gets the rest and
+ * every other car stays idle. Only the cars up to the budget and the cars that were served in the last tick are touched.
+ * In columnar mode the energy is applied by the batch kernels of the fleet state.
+ * Cars of a day ahead schedule get their planned energy first, the rest of the balance is dispatched in the order of the
+ * priorities, where a scheduled car only offers the rest of it's tick.
+ * @see Grid#setGrid_power(double)
+ * @see Day_Ahead_Scheduler
+ */
+public class Dispatcher {
+
+    private static final Electric_Car.ChargingPriority[] CHARGE_ORDER = {
+            Electric_Car.ChargingPriority.URGENT, Electric_Car.ChargingPriority.NORMAL, Electric_Car.ChargingPriority.WEAK, Electric_Car.ChargingPriority.NONE
+    };
+    private static final Electric_Car.ChargingPriority[] DISCHARGE_ORDER = {
+            Electric_Car.ChargingPriority.NONE, Electric_Car.ChargingPriority.WEAK, Electric_Car.ChargingPriority.NORMAL, Electric_Car.ChargingPriority.URGENT
+    };
+
+    private final Grid grid; // The grid that is balanced
+
+    // Buffers that are reused each tick, one entry per car in dispatch order
+    private int[] indices = new int[16]; // The registry indices of the cars (equal to the rows of the fleet state)
+    private double[] energy = new double[16]; // The energy the car can take / provide in kWh, afterwards the dispatched energy
+    private double[] prefix = new double[16]; // The energy of all entries up to (and including) the entry in kWh
+    private double[] floor = new double[16]; // The charge status the car must not be discharged below in %
+    private int count = 0; // How many entries are used
+
+    // The registry indices of the cars that got energy in the last / current tick, null if unknown (every connected car)
+    private BitSet active = null;
+    private BitSet served = new BitSet();
+    private double[] followed = new double[0]; // The planned energy each car got in the current tick in kWh (by registry index), negative if discharged, valid while served
+
+    private double charged_energy = 0.0, discharged_energy = 0.0; // The energy of the last tick in kWh
+    private double total_charged_energy = 0.0, total_discharged_energy = 0.0; // The energy of all ticks in kWh
+    private Day_Ahead_Scheduler.Schedule schedule; // The day ahead schedule of the current tick, null if there is none
+
+    Dispatcher(Grid grid) {
+        this.grid = grid;
+    }
+
+    /** Distributes the energy of one tick among the connected cars
+     * @param balance The surplus (positive) or deficit (negative) of the tick in kWh | e.g. -250.0
+     */
+    void dispatch(double balance) {
+        Electric_Car[] fleet = grid.electric_cars.elements();
+        if (active == null) { // E.g. after a checkpoint was restored
+            active = new BitSet();
+            for (int i = grid.priority_buckets.next(0); i >= 0; i = grid.priority_buckets.next(i + 1)) active.set(i);
+        }
+        served.clear();
+        charged_energy = 0.0;
+        discharged_energy = 0.0;
+
+        Day_Ahead_Scheduler day_ahead_scheduler = grid.getDay_ahead_scheduler();
+        schedule = day_ahead_scheduler != null ? day_ahead_scheduler.getSchedule() : null;
+        if (schedule != null) balance = follow(schedule, balance);
+
+        // Cars below their min charge status are charged at all costs, they are served first
+        count = 0;
+        gather(fleet, Electric_Car.ChargingPriority.IMMEDIATELY, true, Double.POSITIVE_INFINITY);
+        int immediate = count;
+
+        if (balance >= 0) {
+            double limit = balance + (immediate > 0 ? prefix[immediate - 1] : 0.0); // The guaranteed entries don't use the budget
+            for (Electric_Car.ChargingPriority charging_priority : CHARGE_ORDER) {
+                if (!gather(fleet, charging_priority, true, limit)) break;
+            }
+            allocate(immediate, balance);
+            charged_energy += charge(fleet);
+        } else {
+            allocate(immediate, 0.0);
+            charged_energy += charge(fleet);
+
+            count = 0;
+            for (Electric_Car.ChargingPriority charging_priority : DISCHARGE_ORDER) {
+                if (!gather(fleet, charging_priority, false, -balance)) break;
+            }
+            allocate(0, -balance);
+            discharged_energy += discharge(fleet);
+        }
+        total_charged_energy += charged_energy;
+        total_discharged_energy += discharged_energy;
+
+        // Cars that got energy in the last tick but not in this one become idle (unless they were disconnected in between)
+        active.andNot(served);
+        for (int i = active.nextSetBit(0); i >= 0; i = active.nextSetBit(i + 1)) {
+            if (fleet[i].v2g_unit != null) idle(fleet[i]);
+        }
+        BitSet last = active;
+        active = served;
+        served = last;
+    }
+
+    /** Charges / discharges the cars of the day ahead schedule with exactly their planned energy of the current tick. The
+     * rest of the balance is dispatched in the order of the priorities afterwards, where a scheduled car only offers what
+     * is left of the tick. Planned charging beyond the surplus (e.g. for a contract) doesn't use the budget of the other
+     * cars, like the cars that are charged at all costs. Discharging respects the discharge floor, so the contracts the
+     * plan charged for stay fulfilled. Cars below their min charge status are skipped, they are charged at all costs instead.
+     * @param schedule The schedule of the current day
+     * @param balance The surplus (positive) or deficit (negative) of the tick in kWh
+     * @return The balance that is left for the other cars in kWh
+     */
+    private double follow(Day_Ahead_Scheduler.Schedule schedule, double balance) {
+        int tick = grid.time.inMinutesWithHoursIsolated() / schedule.tick_speed;
+        if (followed.length < grid.electric_cars.elements().length) followed = new double[grid.electric_cars.elements().length];
+        for (int entry = schedule.from(tick); entry < schedule.to(tick); entry++) {
+            Electric_Car electric_car = schedule.getElectric_car(entry);
+            if (electric_car.scheduled_day != schedule.day) continue; // Disconnected since the planning
+            int index = grid.electric_cars.indexOf(electric_car.grid_id);
+            if (grid.priority_buckets.get(index) == Electric_Car.ChargingPriority.IMMEDIATELY) continue;
+
+            double planned = schedule.getEnergy(entry);
+            if (planned > 0.0) {
+                double charged = electric_car.v2g_unit.tick_charge(planned);
+                charged_energy += charged;
+                if (balance > 0.0) balance = Math.max(balance - charged, 0.0);
+                followed[index] = charged;
+                if (charged > 0.0) served.set(index);
+            } else {
+                double discharged = electric_car.v2g_unit.tick_discharge(-planned);
+                discharged_energy += discharged;
+                if (balance < 0.0) balance = Math.min(balance + discharged, 0.0);
+                followed[index] = -discharged;
+                if (discharged > 0.0) served.set(index);
+            }
+        }
+        return balance;
+    }
+
+    /** Appends the cars of a priority that can take / provide energy until the budget is exceeded
+     * @param fleet The cars of the grid
+     * @param charging_priority The priority
+     * @param charge Whether the cars should be charged or discharged
+     * @param limit The prefix sum after which no more cars are needed in kWh
+     * @return Whether more cars are needed
+     */
+    private boolean gather(Electric_Car[] fleet, Electric_Car.ChargingPriority charging_priority, boolean charge, double limit) {
+        Priority_Buckets priority_buckets = grid.priority_buckets;
+        for (int index = priority_buckets.next(charging_priority, 0); index >= 0; index = priority_buckets.next(charging_priority, index + 1)) {
+            Electric_Car electric_car = fleet[index];
+            double car_energy = charge ? electric_car.v2g_unit.charge_demand() : electric_car.v2g_unit.discharge_supply();
+            if (served.get(index)) { // Got it's planned energy already, only the rest of the tick is left
+                car_energy = (followed[index] > 0.0) == charge ? car_energy - Math.abs(followed[index]) : 0.0;
+            }
+            if (car_energy <= 0.0) continue;
+
+            if (count == indices.length) resize(count * 2);
+            indices[count] = index;
+            energy[count] = car_energy;
+            prefix[count] = (count > 0 ? prefix[count - 1] : 0.0) + car_energy;
+            if (!charge) floor[count] = electric_car.v2g_unit.discharge_floor();
+            if (prefix[count++] > limit) return false;
+        }
+        return true;
+    }
+
+    /** Limits the entries to the budget. Every entry before the budget is exceeded is served completely (the energy
+     * becomes infinite), the entry that exceeds it gets the rest and all later entries are removed.
+     * @param guaranteed How many entries are served completely in any case
+     * @param budget The energy that can be dispatched in kWh
+     */
+    private void allocate(int guaranteed, double budget) {
+        budget += guaranteed > 0 ? prefix[guaranteed - 1] : 0.0; // The guaranteed entries don't use the budget
+
+        // The first entry that can't be served completely
+        int exceeding = Arrays.binarySearch(prefix, guaranteed, count, budget);
+        exceeding = exceeding >= 0 ? exceeding + 1 : -exceeding - 1;
+
+        int entries = exceeding;
+        if (exceeding < count) {
+            double rest = budget - (exceeding > 0 ? prefix[exceeding - 1] : 0.0);
+            if (rest > 0.0) energy[entries++] = rest;
+        }
+        for (int i = 0; i < exceeding; i++) {
+            if (!served.get(indices[i])) energy[i] = Double.POSITIVE_INFINITY; // Scheduled cars keep the rest of their tick as limit
+        }
+        count = entries;
+    }
+
+    /**
+     * Charges the entries with at most their energy.
+     * @return The charged energy in kWh
+     */
+    private double charge(Electric_Car[] fleet) {
+        double total = 0.0;
+        if (grid.fleet_state != null) {
+            total = grid.fleet_state.charge(indices, count, grid.getTick_speed(), energy);
+            journal(fleet, Journal.Type.CHARGE);
+        } else {
+            for (int i = 0; i < count; i++) {
+                energy[i] = fleet[indices[i]].v2g_unit.tick_charge(energy[i]);
+                total += energy[i];
+            }
+        }
+        mark_served();
+        return total;
+    }
+
+    /**
+     * Discharges the entries with at most their energy.
+     * @return The energy that was fed into the grid in kWh
+     */
+    private double discharge(Electric_Car[] fleet) {
+        double total = 0.0;
+        if (grid.fleet_state != null) {
+            total = grid.fleet_state.discharge(indices, count, grid.getTick_speed(), floor, energy);
+            journal(fleet, Journal.Type.DISCHARGE);
+        } else {
+            for (int i = 0; i < count; i++) {
+                energy[i] = fleet[indices[i]].v2g_unit.tick_discharge(energy[i]);
+                total += energy[i];
+            }
+        }
+        mark_served();
+        return total;
+    }
+
+    /**
+     * Marks the entries that got energy, entries without energy (e.g. a rest below one minute of discharging) become idle.
+     */
+    private void mark_served() {
+        for (int i = 0; i < count; i++) {
+            if (energy[i] > 0.0) served.set(indices[i]);
+        }
+    }
+
+    /**
+     * Writes the energy of the entries to the journal of the grid (the batch kernels don't), if one is written.
+     */
+    private void journal(Electric_Car[] fleet, Journal.Type type) {
+        Journal journal = grid.getJournal();
+        if (journal == null) return;
+        for (int i = 0; i < count; i++) journal.energy(type, fleet[indices[i]], energy[i], grid.time.asEpochMinute());
+    }
+
+    /** Switches a car that gets no energy to idle
+     * @param electric_car The car
+     */
+    private void idle(Electric_Car electric_car) {
+        if (electric_car.state.getDescriptor() == Electric_Car.State.Descriptor.CONNECTED_IDLE) return;
+        electric_car.state.setDescriptor(Electric_Car.State.Descriptor.CONNECTED_IDLE);
+        Journal journal = grid.getJournal();
+        if (journal != null) journal.energy(Journal.Type.CHARGE, electric_car, 0.0, grid.time.asEpochMinute());
+    }
+
+    /** Moves the entry of a registry index to another index, mirrors the swap in Registry#remove
+     * @param from The old registry index (the last one)
+     * @param to The new registry index
+     */
+    void move(int from, int to) {
+        if (active == null) return;
+        active.set(to, active.get(from));
+        active.clear(from);
+    }
+
+    private void resize(int entries) {
+        indices = Arrays.copyOf(indices, entries);
+        energy = Arrays.copyOf(energy, entries);
+        prefix = Arrays.copyOf(prefix, entries);
+        floor = Arrays.copyOf(floor, entries);
+    }
+
+    /**
+     * @return The energy the cars were charged with during the last tick in kWh
+     */
+    public double getCharged_energy() {
+        return charged_energy;
+    }
+
+    /**
+     * @return The energy the cars fed into the grid during the last tick in kWh
+     */
+    public double getDischarged_energy() {
+        return discharged_energy;
+    }
+
+    /**
+     * @return The energy the cars were charged with since the grid was created (or restored) in kWh
+     */
+    public double getTotal_charged_energy() {
+        return total_charged_energy;
+    }
+
+    /**
+     * @return The energy the cars fed into the grid since the grid was created (or restored) in kWh
+     */
+    public double getTotal_discharged_energy() {
+        return total_discharged_energy;
+    }
+}
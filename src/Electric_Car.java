@@ -1,8 +1,8 @@
 import Services.Out;
+import Services.Random_Stream;
 import Services.Time;
 
 import java.util.Arrays;
-import java.util.Random;
 import java.util.Set;
 
 /**
@@ -11,13 +11,13 @@ import java.util.Set;
  */
 public class Electric_Car extends Car implements Out {
 
-    private double charge_status = 100.0; // The charging status as percentage | 100%
+    private double charge_status = 100.0; // The charging status as percentage | 100%, stored in the fleet state while attached
 
     public final double energy_consumption; // The energy consumption in kWh/100km.
     private final double capacity; // The capacity of the car in kWh
     public final double max_charge_rate; // The maximal charge rate of the vehicle in kW
 
-    public double speed = 90; // The speed of the vehicle in km/h
+    private double speed = 90; // The speed of the vehicle in km/h, stored in the fleet state while attached
 
     public final String grid_id; // The unique identifier in the current grid
 
@@ -31,7 +31,22 @@ public class Electric_Car extends Car implements Out {
 
     private final Time global_time; // The Time object of the grid
 
-    final State state = new State(); // The state of the vehicle, is planned to be used in a future GUI
+    final State state; // The state of the vehicle, is planned to be used in a future GUI
+
+    final Random_Stream random; // The random stream of this, derived from the seed of the grid
+
+    // The last calculated charging priority and it's inputs, the priority is reused as long as they stay the same
+    private ChargingPriority cached_priority;
+    private double cached_charge_status;
+    private ChargingProfile cached_profile;
+    private V2G_Unit cached_v2g_unit;
+    private int cached_tick_speed; // The charging time depends on the tick speed
+    private long cached_from = -1, cached_until = -1; // The epoch minutes in which the cached priority is valid (until is exclusive)
+
+    int scheduled_day = -1; // The day whose day ahead schedule plans this, -1 if it is dispatched tick by tick
+
+    Fleet_State fleet_state; // The columnar fleet state that stores the hot fields of this, null in object mode
+    int fleet_row = -1; // The row of this in the fleet_state
 
     /** Constructor for the Electric_Car class. Predefined car-models are available through the Models.java class.
      * ^ : has impact on the car's behavior, * : just for design purposes
@@ -46,12 +61,24 @@ public class Electric_Car extends Car implements Out {
      * @param log_level ^ The log level of this.
      */
     Electric_Car(String owner, String license_plate, int ps, String brand, String model_name , double capacity, double energy_consumption, double max_charge_rate, Grid grid, Log_Level log_level) {
+        this(owner, license_plate, ps, brand, model_name, capacity, energy_consumption, max_charge_rate, grid, log_level, null, grid.create_car_random());
+    }
+
+    /** Constructor that restores a car from a checkpoint, the car keeps it's id and continues it's random stream.
+     * @param grid_id The id of the car, null to generate a new one
+     * @param random The random stream of the car
+     * @see Checkpoint
+     * @see #Electric_Car(String, String, int, String, String, double, double, double, Grid, Log_Level)
+     */
+    Electric_Car(String owner, String license_plate, int ps, String brand, String model_name , double capacity, double energy_consumption, double max_charge_rate, Grid grid, Log_Level log_level, String grid_id, Random_Stream random) {
         super(ps, brand, model_name, owner, license_plate);
 
         this.capacity = capacity;
         this.energy_consumption = energy_consumption;
         this.max_charge_rate = max_charge_rate;
-        this.grid_id = grid.register(this);
+        this.random = random;
+        this.state = new State(random);
+        this.grid_id = grid_id == null ? grid.register(this) : grid.register(this, grid_id);
         this.global_time = grid.time;
         this.operating_grid = grid;
 
@@ -70,17 +97,17 @@ public class Electric_Car extends Car implements Out {
             print("Car cannot be driven while still being connected to a V2G unit.", Log_Level.ERROR);
             successful = false;
         } else if (remaining_capacity < 0) {
-            print(String.format("Drove %s km.", this.capacity * (this.charge_status / 100) / (energy_consumption / 100)), Log_Level.WARN);
+            print("Drove %s km.", Log_Level.WARN, this.capacity * (getCharge_status() / 100) / (energy_consumption / 100));
             print("Car was discharged before reaching the destination and needs to be recharged, please call a towing service.", Log_Level.ERROR);
-            this.charge_status = 0.0;
+            setCharge_status(0.0);
 
             state.setDescriptor(State.Descriptor.IDLE);
             successful = false;
             // I'm considering using exceptions, but they seem not to be as user friendly in a complex network:
             // throw new Exceptions.EmptyBatteryException("Please charge your car now.");
         } else {
-            print(String.format("Drove %s km.", route_length), Log_Level.INFO);
-            this.charge_status = (remaining_capacity / capacity) * 100;
+            print("Drove %s km.", Log_Level.INFO, route_length);
+            setCharge_status((remaining_capacity / capacity) * 100);
             printChargeLevel();
 
             state.setDescriptor(State.Descriptor.IDLE);
@@ -96,12 +123,13 @@ public class Electric_Car extends Car implements Out {
     @Override
     public boolean drive(double route_length) {
         boolean successful;
-        if (state.descriptor != State.Descriptor.IDLE) {
+        if (state.getDescriptor() != State.Descriptor.IDLE) {
             print("Vehicle must be in idle before attempting to drive.", Log_Level.ERROR);
             successful = false;
         } else {
-            print(String.format("Started route with %skm. This will take approximately %s minutes.", route_length, calculateRouteDuration(route_length).inMinutes()), Log_Level.INFO);
+            print("Started route with %skm. This will take approximately %s minutes.", Log_Level.INFO, route_length, calculateRouteDuration(route_length).inMinutes());
             state.setDriving_descriptor(route_length);
+            journal_state();
             successful = true;
         }
 
@@ -116,16 +144,14 @@ public class Electric_Car extends Car implements Out {
         boolean possible;
         double remaining_capacity = calculateRouteConsumption(route_length);
         // If the remaining route length is still inside the capacity spectrum the method will still return true
-        boolean big_tick_speed_prevention = calculateRouteConsumption(state.remaining_route_length) >= 0;
+        boolean big_tick_speed_prevention = calculateRouteConsumption(state.getRemaining_route_length()) >= 0;
         if (remaining_capacity >= 0.0 || big_tick_speed_prevention) {
             // Capacity is sufficient
-            this.charge_status = (remaining_capacity / capacity) * 100;
+            setCharge_status((remaining_capacity / capacity) * 100);
             possible = true;
         } else {
             // Capacity is insufficient
-            print("Vehicle was discharged before reaching the destination and needs to be recharged, a towing service was automatically called.", Log_Level.WARN);
-            this.charge_status = 0.0;
-            state.setBeing_towed_descriptor();
+            call_towing_service();
             possible = false;
         }
         return possible;
@@ -138,20 +164,13 @@ public class Electric_Car extends Car implements Out {
         if (state.getDescriptor() != State.Descriptor.DRIVING) throw new IllegalArgumentException("tick_drive() called whilst not driving");
 
         int tick_speed = operating_grid.getTick_speed();
-        double traveled_distance = (speed/60) * tick_speed;
-        if (state.remaining_route_length - traveled_distance > 0.0) {
+        double traveled_distance = (getSpeed()/60) * tick_speed;
+        if (state.getRemaining_route_length() - traveled_distance > 0.0) {
             if (!apply_route_consumption(traveled_distance)) return;
-            state.remaining_route_length = state.remaining_route_length - traveled_distance;
+            state.updateRemaining_route_length(state.getRemaining_route_length() - traveled_distance);
         } else {
             if (!apply_route_consumption(traveled_distance)) return;
-            traveled_distance += (state.remaining_route_length - traveled_distance);
-
-            print(String.format("Drove %skm.", state.total_route_length), Log_Level.INFO);
-            printChargeLevel();
-
-            state.remaining_route_length = -1;
-            state.total_route_length = -1;
-            state.descriptor = State.Descriptor.IDLE;
+            finish_route();
         }
     }
 
@@ -162,21 +181,105 @@ public class Electric_Car extends Car implements Out {
         if (state.getDescriptor() != State.Descriptor.BEING_TOWED) throw new IllegalArgumentException("tick_be_towed() called whilst not being towed");
         // Time penalty : 30min / Tower speed : 70 km/h
         int tick_speed = operating_grid.getTick_speed();
-        if (state.remaining_time_penalty > 0) state.remaining_time_penalty  = state.remaining_time_penalty - tick_speed <= 0 ? -1 : state.remaining_time_penalty - tick_speed;
+        double remaining_time_penalty = state.getRemaining_time_penalty();
+        if (remaining_time_penalty > 0) state.updateRemaining_time_penalty(remaining_time_penalty - tick_speed <= 0 ? -1 : remaining_time_penalty - tick_speed);
         else {
             double traveled_distance = 70.0 / 60 * operating_grid.getTick_speed();
-            if (state.remaining_route_length - traveled_distance > 0) state.remaining_route_length = state.remaining_route_length - traveled_distance;
-            else {
-                print(String.format("Vehicle has reached it's destination with the towing service. Drove %skm.", state.total_route_length), Log_Level.INFO);
-                printChargeLevel();
-                state.remaining_route_length = -1;
-                state.total_route_length = -1;
-                state.descriptor = State.Descriptor.IDLE;
+            if (state.getRemaining_route_length() - traveled_distance > 0) state.updateRemaining_route_length(state.getRemaining_route_length() - traveled_distance);
+            else finish_towing();
+        }
+    }
 
-            }
+    /**
+     * Ends the current route after the destination was reached.
+     */
+    void finish_route() {
+        print("Drove %skm.", Log_Level.INFO, state.getTotal_route_length());
+        printChargeLevel();
+        state.setIdle_descriptor();
+        journal_state();
+    }
+
+    /**
+     * Ends the current route after the towing service reached the destination.
+     */
+    void finish_towing() {
+        print("Vehicle has reached it's destination with the towing service. Drove %skm.", Log_Level.INFO, state.getTotal_route_length());
+        printChargeLevel();
+        state.setIdle_descriptor();
+        journal_state();
+    }
+
+    /**
+     * Switches to the being towed state after the vehicle was discharged during a route.
+     */
+    void call_towing_service() {
+        print("Vehicle was discharged before reaching the destination and needs to be recharged, a towing service was automatically called.", Log_Level.WARN);
+        setCharge_status(0.0);
+        state.setBeing_towed_descriptor();
+        operating_grid.count_towing_event();
+        journal_state();
+    }
+
+    /**
+     * Writes the current state to the journal of the grid, if one is written.
+     */
+    private void journal_state() {
+        Journal journal = operating_grid.getJournal();
+        if (journal != null) journal.state_change(this, global_time.asEpochMinute());
+    }
+
+    /** Predicts how many ticks the current route takes until the destination is reached or the towing service is called.
+     * Uses the same calculations as tick_drive() without changing the car.
+     * @return ticks : int | The number of ticks including the last one, -1 if the route never ends (speed of 0)
+     * @see Event_Scheduler
+     */
+    int ticks_until_route_end() {
+        double traveled_distance = (getSpeed()/60) * operating_grid.getTick_speed();
+        if (traveled_distance <= 0.0) return -1;
+
+        double charge_status = getCharge_status();
+        double remaining_route_length = state.getRemaining_route_length();
+        int ticks = 0;
+        while (true) {
+            ticks++;
+            double remaining_capacity = capacity * (charge_status / 100.0) - traveled_distance * (energy_consumption / 100);
+            boolean big_tick_speed_prevention = capacity * (charge_status / 100.0) - remaining_route_length * (energy_consumption / 100) >= 0;
+            if (remaining_capacity < 0.0 && !big_tick_speed_prevention) return ticks; // The towing service is called
+            charge_status = (remaining_capacity / capacity) * 100;
+            if (remaining_route_length - traveled_distance > 0.0) remaining_route_length = remaining_route_length - traveled_distance;
+            else return ticks;
         }
+    }
 
+    /** Predicts how many ticks pass until the towing vehicle arrives (the time penalty runs out).
+     * @return ticks : int | The number of ticks including the last one, 0 if it already arrived
+     * @see #tick_be_towed()
+     */
+    int ticks_until_tow_truck_arrival() {
+        int tick_speed = operating_grid.getTick_speed();
+        double remaining_time_penalty = state.getRemaining_time_penalty();
+        int ticks = 0;
+        while (remaining_time_penalty > 0) {
+            remaining_time_penalty = remaining_time_penalty - tick_speed <= 0 ? -1 : remaining_time_penalty - tick_speed;
+            ticks++;
+        }
+        return ticks;
+    }
 
+    /** Predicts how many ticks the towing service needs to reach the destination after it arrived.
+     * @return ticks : int | The number of ticks including the last one
+     * @see #tick_be_towed()
+     */
+    int ticks_until_tow_end() {
+        double traveled_distance = 70.0 / 60 * operating_grid.getTick_speed();
+        double remaining_route_length = state.getRemaining_route_length();
+        int ticks = 1;
+        while (remaining_route_length - traveled_distance > 0) {
+            remaining_route_length = remaining_route_length - traveled_distance;
+            ticks++;
+        }
+        return ticks;
     }
 
     /** Calculates the energy consumption for a specified route_length as a negative %
@@ -186,7 +289,7 @@ public class Electric_Car extends Car implements Out {
     public double calculateRouteConsumption(double route_length) {
         double overall_consumption = route_length * (energy_consumption / 100);
 
-        return capacity * (charge_status / 100.0) - overall_consumption;
+        return capacity * (getCharge_status() / 100.0) - overall_consumption;
     }
 
     /** Calculates the route duration
@@ -206,18 +309,19 @@ public class Electric_Car extends Car implements Out {
      */
     public boolean connectToV2GUnit(V2G_Unit v2g_unit) {
         boolean successful;
-        if (this.v2g_unit == null && state.descriptor == State.Descriptor.IDLE) {
+        if (this.v2g_unit == null && state.getDescriptor() == State.Descriptor.IDLE) {
             successful = v2g_unit.connectElectricCar(this);
             if (!successful) {
                 operating_grid.printV2GUnits();
             } else {
                 state.setDescriptor(State.Descriptor.CONNECTED_IDLE);
+                journal_state();
             }
-        } else if (Set.of(State.Descriptor.CONNECTED_CHARGING, State.Descriptor.CONNECTED_DISCHARGING, State.Descriptor.CONNECTED_IDLE).contains(state.descriptor)) {
-            print(String.format("Can't connect to new V2G_Unit while unit with ID %s is still connected.", v2g_unit.grid_id), Log_Level.ERROR);
+        } else if (Set.of(State.Descriptor.CONNECTED_CHARGING, State.Descriptor.CONNECTED_DISCHARGING, State.Descriptor.CONNECTED_IDLE).contains(state.getDescriptor())) {
+            print("Can't connect to new V2G_Unit while unit with ID %s is still connected.", Log_Level.ERROR, v2g_unit.grid_id);
             successful = false;
         } else {
-            print(String.format("Cannot connect to V2G unit because the vehicle is currently in state %s and not IDLE.", state.descriptor.toString()), Log_Level.ERROR);
+            print("Cannot connect to V2G unit because the vehicle is currently in state %s and not IDLE.", Log_Level.ERROR, state.getDescriptor());
             successful = false;
         }
         return successful;
@@ -231,6 +335,7 @@ public class Electric_Car extends Car implements Out {
         if (this.v2g_unit != null) {
             successful = v2g_unit.disconnectElectricCar(this);
             state.setDescriptor(State.Descriptor.IDLE);
+            journal_state();
         } else {
             print("Disconnection was unsuccessful: No V2G unit is connected.", Log_Level.ERROR);
             successful = false;
@@ -242,7 +347,8 @@ public class Electric_Car extends Car implements Out {
      * Outputs the charge level in a user friendly format.
      */
     public void printChargeLevel() {
-        double remaining_km = this.capacity * (this.charge_status / 100) / (energy_consumption / 100);
+        double charge_status = getCharge_status();
+        double remaining_km = this.capacity * (charge_status / 100) / (energy_consumption / 100);
         String recommend;
         Log_Level message_log_level;
 
@@ -257,33 +363,69 @@ public class Electric_Car extends Car implements Out {
             message_log_level = Log_Level.WARN;
         }
 
-        print(String.format("The current charge level is %s%%, you will be able to drive for %skm. %s", Math.round(charge_status), Math.round(remaining_km), recommend), message_log_level);
+        print("The current charge level is %s%%, you will be able to drive for %skm. %s", message_log_level, Math.round(charge_status), Math.round(remaining_km), recommend);
     }
 
     public double getCharge_status() {
-        return this.charge_status;
+        return fleet_state != null ? fleet_state.charge_status[fleet_row] : this.charge_status;
     }
     void setCharge_status(double charge_status) {
-        this.charge_status = charge_status;
+        if (fleet_state != null) fleet_state.charge_status[fleet_row] = charge_status;
+        else this.charge_status = charge_status;
     }
 
-    public double getCapacity() {
-        return this.capacity;
+    /** Replaces the former public field speed, as the speed is stored in the fleet state while this is attached to one
+     * @return The speed of the vehicle in km/h
+     */
+    public double getSpeed() {
+        return fleet_state != null ? fleet_state.speed[fleet_row] : this.speed;
+    }
+    /**
+     * @param speed The speed of the vehicle in km/h | e.g. 90
+     * @see #getSpeed()
+     */
+    public void setSpeed(double speed) {
+        if (fleet_state != null) fleet_state.speed[fleet_row] = speed;
+        else this.speed = speed;
+    }
+
+    /** Moves the hot fields of this into a row of the fleet state, this becomes a view onto the row.
+     * @param fleet_state The fleet state
+     * @param fleet_row The row, the hot fields need to be copied into it already
+     * @see Fleet_State#attach(Electric_Car)
+     */
+    void attach(Fleet_State fleet_state, int fleet_row) {
+        this.fleet_state = fleet_state; this.fleet_row = fleet_row;
+        state.fleet_state = fleet_state; state.fleet_row = fleet_row;
     }
 
     /**
-     * Overload of the inherited print method.
-     * @see Out#print(String, String, String, Log_Level, Log_Level)
+     * Copies the hot fields back from the fleet state, this stores them on it's own again.
      */
-    private void print(String out, Log_Level message_log_level) {
-        Out.print(String.format("%s's car", owner.split(" ")[0]), grid_id, out, this.log_level, message_log_level);
+    void detach() {
+        double charge_status = getCharge_status(), speed = getSpeed();
+        State.Descriptor descriptor = state.getDescriptor();
+        double total_route_length = state.getTotal_route_length(), remaining_route_length = state.getRemaining_route_length(), remaining_time_penalty = state.getRemaining_time_penalty();
+
+        this.fleet_state = null; this.fleet_row = -1;
+        state.fleet_state = null; state.fleet_row = -1;
+
+        this.charge_status = charge_status; this.speed = speed;
+        state.descriptor = descriptor;
+        state.total_route_length = total_route_length; state.remaining_route_length = remaining_route_length; state.remaining_time_penalty = remaining_time_penalty;
+    }
+
+    public double getCapacity() {
+        return this.capacity;
     }
 
     /**
-     * Method to check whether a key is present in a array.
+     * Overload of the inherited print method.
+     * @see Out#print(String, String, Log_Level, Log_Level, String, Object...)
      */
-    private static boolean _contains(final int[] arr, final int key) {
-        return Arrays.stream(arr).anyMatch(i -> i == key);
+    private void print(String out, Log_Level message_log_level, Object... args) {
+        // The name is only built if the message passes the log level
+        if (Out.isEnabled(this.log_level, message_log_level)) Out.print(String.format("%s's car", owner.split(" ")[0]), grid_id, this.log_level, message_log_level, out, args);
     }
 
     /** Method that calculates and returns the charging priority of the vehicle
@@ -296,23 +438,17 @@ public class Electric_Car extends Car implements Out {
 
         ChargingPriority charging_priority;
 
-        if (charge_status <= min_charge_status) { // The min_charge_status is one of out contracts and we want to keep it at all costs
+        if (getCharge_status() <= min_charge_status) { // The min_charge_status is one of out contracts and we want to keep it at all costs
             return ChargingPriority.IMMEDIATELY;
         }
 
         if (contracted_times != null) {
-            contracted_times = Arrays.stream(contracted_times).map(time -> time * 60).toArray();
-            Time simulated_time = new Time();
-            simulated_time.addTime(global_time.inMinutes());
-            int time_until_next_contract = 0; // Time in minutes until the next contracted time has to be reached
-
-            while (!_contains(contracted_times, simulated_time.inMinutesIsolated() + simulated_time.inHoursIsolated() * 60)) {
-                simulated_time.addTime(1);
-                time_until_next_contract++;
-            }
+            int time_until_next_contract = charging_profile.minutes_until_next_contract(global_time.inMinutesWithHoursIsolated()); // Time in minutes until the next contracted time has to be reached
 
-            int charging_time = v2g_unit.calculate_charging_duration(contracted_charge_status).inMinutes(); // Time that is needed to charge the car up to the specified point
-            if (time_until_next_contract <= charging_time) { // If there is less time left to charge the car than there is time until the next contract needs to be fulfilled, charge immediately
+            int charging_time = v2g_unit.calculate_charging_minutes(contracted_charge_status); // Time that is needed to charge the car up to the specified point
+            // If there is less time left to charge the car than there is time until the next contract needs to be fulfilled, charge immediately.
+            // The same goes for a car below it's discharge floor, skipping a tick would make the contract unreachable
+            if (time_until_next_contract <= charging_time || getCharge_status() < v2g_unit.discharge_floor()) {
                 charging_priority = ChargingPriority.IMMEDIATELY;
             } else if (time_until_next_contract <= charging_time * 1.5) { // Else if there is a buffer of up to 50%
                 charging_priority = ChargingPriority.URGENT;
@@ -330,6 +466,58 @@ public class Electric_Car extends Car implements Out {
         return charging_priority;
     }
 
+    /** Returns the charging priority like get_charging_priority(), but reuses the last result while the charge status, the
+     * charging profile and the v2g unit stay the same and the time has not reached the next priority change.
+     * (The tick speed is part of the inputs, as it changes the charging time.)
+     * The change is only predicted once the charge status stayed the same for two calls, so cars that are charged or
+     * discharged every tick only pay for the priority itself.
+     * @return charging_priority : ChargingPriority | The charging priority of the vehicle
+     * @see #minutes_until_priority_change()
+     */
+    ChargingPriority cached_charging_priority() {
+        long minute = global_time.asEpochMinute();
+        double charge_status = getCharge_status();
+        boolean same_inputs = charge_status == cached_charge_status && charging_profile == cached_profile && v2g_unit == cached_v2g_unit
+                && operating_grid.getTick_speed() == cached_tick_speed;
+        if (same_inputs && minute >= cached_from && minute < cached_until) return cached_priority;
+
+        cached_priority = get_charging_priority();
+        cached_charge_status = charge_status;
+        cached_profile = charging_profile;
+        cached_v2g_unit = v2g_unit;
+        cached_tick_speed = operating_grid.getTick_speed();
+        cached_from = minute;
+        if (same_inputs) { // The charge status is steady, the priority only changes with the time
+            int minutes = minutes_until_priority_change();
+            cached_until = minutes == -1 ? Long.MAX_VALUE : minute + minutes;
+        } else cached_until = minute; // Not reused before the inputs were seen twice
+        return cached_priority;
+    }
+
+    /** Predicts in how many minutes the result of get_charging_priority() changes, as long as the charge status stays the same.
+     * @return minutes : int | The minutes until the next change, -1 if the priority never changes
+     * @see #cached_charging_priority()
+     */
+    int minutes_until_priority_change() {
+        if (charging_profile.contracted_times == null || getCharge_status() <= charging_profile.min_charge_status) return -1;
+
+        int time_until_next_contract = charging_profile.minutes_until_next_contract(global_time.inMinutesWithHoursIsolated());
+        int charging_time = v2g_unit.calculate_charging_minutes(charging_profile.contracted_charge_status);
+
+        int minutes = time_until_next_contract + 1; // After the contracted time the next contract applies
+        for (double buffer : PRIORITY_BUFFERS) { // Crossing any of the buffers changes the priority
+            double threshold = charging_time * buffer;
+            if (time_until_next_contract > threshold) minutes = Math.min(minutes, time_until_next_contract - (int) Math.floor(threshold));
+        }
+        // The discharge floor rises until it passes the charge status
+        int floor_minutes = time_until_next_contract - v2g_unit.contract_minutes() + 1;
+        if (floor_minutes > 0) minutes = Math.min(minutes, floor_minutes);
+        return minutes;
+    }
+
+    // The buffers in get_charging_priority() that separate the priorities (relative to the charging time)
+    private static final double[] PRIORITY_BUFFERS = {1, 1.5, 2, 3};
+
     /**
      * A enum that stores different charging priorities that are calculated in the get_charging_priority()
      * method and used by the grid to balance energy distribution.
@@ -359,6 +547,7 @@ public class Electric_Car extends Car implements Out {
             this.min_charge_status = min_charge_status;
             this.contracted_times = contracted_times;
             this.contracted_charge_status = contracted_charge_status;
+            this.minutes_until_next_contract = contracted_times != null ? build_contract_table(contracted_times) : null;
         }
 
         public final String description;
@@ -366,11 +555,43 @@ public class Electric_Car extends Car implements Out {
         public final int[] contracted_times;
         public final Integer contracted_charge_status;
 
+        private final int[] minutes_until_next_contract; // Minutes until the next contracted time for each minute of the day, null without contracted times
+
+        /** Builds the lookup table that maps each minute of the day to the minutes until the next contracted time
+         * @param contracted_times Time in hours when the contracted charge_status has to be reached, e.g. 8 and 17 (o' clock)
+         * @return A array with 1440 integer values
+         */
+        private static int[] build_contract_table(int[] contracted_times) {
+            int[] table = new int[24*60];
+            Arrays.fill(table, -1);
+            for (int contracted_time : contracted_times) {
+                table[contracted_time * 60] = 0;
+            }
+            // Walking backwards over two days makes sure that the minutes before midnight see the contracts of the next day
+            int next_contract = -1;
+            for (int i = 2 * table.length - 1; i >= 0; i--) {
+                if (table[i % table.length] == 0) next_contract = i;
+                if (next_contract != -1 && i < table.length) table[i] = next_contract - i;
+            }
+            return table;
+        }
+
+        /** Returns the time until the next contracted time has to be reached
+         * @param minute_of_day The current minute of the day | e.g. 450 (07:30)
+         * @return The time in minutes | e.g. 30
+         * @throws IllegalStateException if the profile has no contracted times
+         */
+        public int minutes_until_next_contract(int minute_of_day) {
+            if (minutes_until_next_contract == null) throw new IllegalStateException(String.format("%s has no contracted times.", name()));
+            return minutes_until_next_contract[minute_of_day];
+        }
+
     }
 
 
     /**
      * The State class stores the state of the vehicle (duh)
+     * While the vehicle is attached to a fleet state, the fields are stored in the row of the vehicle instead.
      */
     public static class State {
         private Descriptor descriptor = Descriptor.IDLE;
@@ -382,40 +603,109 @@ public class Electric_Car extends Car implements Out {
         // Additional information of the being_towed descriptor
         private double remaining_time_penalty = -1;
 
+        private Fleet_State fleet_state; // The columnar fleet state, null in object mode
+        private int fleet_row = -1; // The row of the vehicle in the fleet_state
+
+        private final Random_Stream random; // The random stream used for the towing penalty
+
         // Descriptors that are not directly setable, because they require more information.
-        private final Set<Descriptor> non_directly_setable_descriptors = Set.of(Descriptor.DRIVING, Descriptor.BEING_TOWED);
+        private static final Set<Descriptor> non_directly_setable_descriptors = Set.of(Descriptor.DRIVING, Descriptor.BEING_TOWED);
+
+        /**
+         * @param random The random stream used for the towing penalty, should be the stream of the vehicle
+         */
+        State(Random_Stream random) {
+            this.random = random;
+        }
+
+        public State() {
+            this(new Random_Stream());
+        }
 
         private void isIdle() {
-            if (this.descriptor != Descriptor.IDLE) throw new IllegalArgumentException("State was improperly switched.");
+            if (getDescriptor() != Descriptor.IDLE) throw new IllegalArgumentException("State was improperly switched.");
         }
 
         public void setDriving_descriptor(double total_route_length) {
             isIdle();
-            this.descriptor = Descriptor.DRIVING;
-            this.total_route_length = total_route_length;
-            this.remaining_route_length = total_route_length;
+            updateDescriptor(Descriptor.DRIVING);
+            updateTotal_route_length(total_route_length);
+            updateRemaining_route_length(total_route_length);
         }
 
         public void setBeing_towed_descriptor() {
-            if (descriptor != Descriptor.DRIVING) throw new IllegalArgumentException("Being towed was set but vehicle is not driving");
-            this.descriptor = Descriptor.BEING_TOWED;
-            remaining_time_penalty = 25 + new Random().nextInt(10); // The towing vehicle needs approx 30minutes until it arrives at the destination
+            if (getDescriptor() != Descriptor.DRIVING) throw new IllegalArgumentException("Being towed was set but vehicle is not driving");
+            updateDescriptor(Descriptor.BEING_TOWED);
+            updateRemaining_time_penalty(25 + random.nextInt(10)); // The towing vehicle needs approx 30minutes until it arrives at the destination
+        }
+
+        /**
+         * Resets the route information after a route was finished.
+         */
+        private void setIdle_descriptor() {
+            updateRemaining_route_length(-1);
+            updateTotal_route_length(-1);
+            updateDescriptor(Descriptor.IDLE);
         }
 
         public void setRemaining_route_length(double remaining_route_length) {
-            if (descriptor != Descriptor.DRIVING) throw new IllegalArgumentException("Remaining route length can only be set if the vehicle is currently driving");
-            this.remaining_route_length = remaining_route_length;
+            if (getDescriptor() != Descriptor.DRIVING) throw new IllegalArgumentException("Remaining route length can only be set if the vehicle is currently driving");
+            updateRemaining_route_length(remaining_route_length);
         }
 
         public void setDescriptor(Descriptor descriptor) {
             if (non_directly_setable_descriptors.contains(descriptor)) {
                 throw new IllegalArgumentException(String.format("Descriptor %s requires additional information to be set.", descriptor.toString()));
             }
-            this.descriptor = descriptor;
+            updateDescriptor(descriptor);
+        }
+
+        /** Restores the state from a checkpoint without validating the transition
+         * @see Checkpoint
+         */
+        void restore(Descriptor descriptor, double total_route_length, double remaining_route_length, double remaining_time_penalty) {
+            updateDescriptor(descriptor);
+            updateTotal_route_length(total_route_length);
+            updateRemaining_route_length(remaining_route_length);
+            updateRemaining_time_penalty(remaining_time_penalty);
         }
 
         public Descriptor getDescriptor() {
-            return descriptor;
+            return fleet_state != null ? Descriptor.BY_ORDINAL[fleet_state.descriptor[fleet_row]] : descriptor;
+        }
+
+        public double getTotal_route_length() {
+            return fleet_state != null ? fleet_state.total_route_length[fleet_row] : total_route_length;
+        }
+
+        public double getRemaining_route_length() {
+            return fleet_state != null ? fleet_state.remaining_route_length[fleet_row] : remaining_route_length;
+        }
+
+        public double getRemaining_time_penalty() {
+            return fleet_state != null ? fleet_state.remaining_time_penalty[fleet_row] : remaining_time_penalty;
+        }
+
+        // ## Unchecked setters that write into the fleet state while attached
+
+        private void updateDescriptor(Descriptor descriptor) {
+            if (fleet_state != null) fleet_state.descriptor[fleet_row] = (byte) descriptor.ordinal();
+            else this.descriptor = descriptor;
+        }
+
+        private void updateTotal_route_length(double total_route_length) {
+            if (fleet_state != null) fleet_state.total_route_length[fleet_row] = total_route_length;
+            else this.total_route_length = total_route_length;
+        }
+
+        private void updateRemaining_route_length(double remaining_route_length) {
+            if (fleet_state != null) fleet_state.remaining_route_length[fleet_row] = remaining_route_length;
+            else this.remaining_route_length = remaining_route_length;
+        }
+
+        private void updateRemaining_time_penalty(double remaining_time_penalty) {
+            if (fleet_state != null) fleet_state.remaining_time_penalty[fleet_row] = remaining_time_penalty;
+            else this.remaining_time_penalty = remaining_time_penalty;
         }
 
         enum Descriptor {
@@ -424,7 +714,9 @@ public class Electric_Car extends Car implements Out {
             CONNECTED_IDLE,
             IDLE,
             DRIVING,
-            BEING_TOWED
+            BEING_TOWED;
+
+            static final Descriptor[] BY_ORDINAL = values(); // Cached, values() creates a new array on each call
         }
     }
 
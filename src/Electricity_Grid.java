@@ -1,46 +1,61 @@
-import java.util.Random;
+import Services.Random_Stream;
+import Services.Random_Streams;
+
+import java.util.Objects;
 
 public class Electricity_Grid {
 
+    private final Random_Streams random_streams; // The random streams of the simulation, each day and source uses it's own stream
+    private final Snapshot_Cache snapshot_cache; // Stores the generated days and snapshots
 
     /**
-     * @return A Electricity_Snapshot for one day.
+     * @param random_streams The random streams of the simulation
+     * @param snapshot_cache The cache of generated days, can be shared between grids
      */
-    public Electricity_Snapshot getSnapshot(Distribution distribution) {
-        Weather weather = new Weather();
+    Electricity_Grid(Random_Streams random_streams, Snapshot_Cache snapshot_cache) {
+        this.random_streams = random_streams;
+        this.snapshot_cache = snapshot_cache;
+    }
 
-        int[] production = new int[24*60];
-        int[] wind = wind_farm(weather);
-        int[] pv = pv_farm(weather);
-        int[] water = water_power_plant(weather);
-        int[] nuclear = nuclear_power_plant();
-        int[] coal = coal_fired_power_station();
-        for (int i = 0; i < production.length; i++) {
-            production[i] = distribution.weak_distribution ?
-                    ((wind[i] + pv[i] + water[i]) * distribution.renewable_energy + (nuclear[i] + coal[i]) * distribution.nonrenewable_energy) / (distribution.renewable_energy + distribution.nonrenewable_energy) :
-                    (wind[i] * distribution.wind + pv[i] * distribution.pv + water[i] * distribution.water + nuclear[i] * distribution.nuclear + coal[i] * distribution.coal) / (distribution.wind + distribution.pv + distribution.water + distribution.nuclear + distribution.coal);
-        }
-        for (int i = 0; i < production.length; i++) {
-            production[i] /= 4;
-        }
-        int[] consumption = generateConsumption();
-        // System.out.println("Production: " + Arrays.toString(production) + "\nConsumption: " + Arrays.toString(consumption));
-        return new Electricity_Snapshot(production, consumption, weather);
+    /**
+     * @see #Electricity_Grid(Random_Streams, Snapshot_Cache)
+     */
+    Electricity_Grid(Random_Streams random_streams) {
+        this(random_streams, new Snapshot_Cache());
     }
 
-    private int[] generateConsumption() {
-        int[] consumption = {35, 32, 30, 30, 30, 32, 36, 50, 57, 54, 48, 48, 51, 57, 50, 45, 40, 50, 65, 80, 82, 65, 53, 45, 40};
-        Random random = new Random();
-        for (int i = 0; i < consumption.length; i++) {
-            consumption[i] += random.nextInt(6);
-        }
-        return smooth(consumption);
+    /** Returns the snapshot of a day. Snapshots are cached and the values are generated lazily upon first access,
+     * requesting the same day again (e.g. to revisit it) returns equal values.
+     * @param distribution The distribution of energy sources
+     * @param day The day | e.g. 3
+     * @return A Electricity_Snapshot for one day.
+     */
+    public Electricity_Snapshot getSnapshot(Distribution distribution, int day) {
+        long seed = random_streams.getSeed();
+        return snapshot_cache.getSnapshot(seed, day, distribution, () -> new Electricity_Snapshot(
+                snapshot_cache.getDay_sources(seed, day, () -> new Day_Sources(random_streams, day)),
+                distribution
+        ));
+    }
+
+    /** Builds the snapshot of a day into a buffer snapshot that is reused every day, which avoids any allocation of
+     * minute arrays. Previously returned values of the buffer are overwritten.
+     * @param distribution The distribution of energy sources
+     * @param day The day | e.g. 3
+     * @param buffer The buffer snapshot, null creates a new one
+     * @return The buffer snapshot with the values of the day
+     */
+    Electricity_Snapshot getSnapshot(Distribution distribution, int day, Electricity_Snapshot buffer) {
+        long seed = random_streams.getSeed();
+        if (buffer == null) buffer = new Electricity_Snapshot();
+        buffer.rebuild(snapshot_cache.getDay_sources(seed, day, () -> new Day_Sources(random_streams, day)), distribution);
+        return buffer;
     }
 
     public static class Distribution {
-        final int wind; final int pv; final int water; final int nuclear; final int coal;
-        final int renewable_energy; final int nonrenewable_energy;
-        final boolean weak_distribution;
+        public final int wind; public final int pv; public final int water; public final int nuclear; public final int coal;
+        public final int renewable_energy; public final int nonrenewable_energy;
+        public final boolean weak_distribution;
 
         Distribution(int wind, int pv, int water, int nuclear, int coal) {
             if (wind < 0 || pv < 0 || water < 0 || nuclear < 0 || coal < 0) {throw new IllegalArgumentException("Proportion needs to be greater or equal to 0.");}
@@ -56,52 +71,40 @@ public class Electricity_Grid {
             weak_distribution = true;
         }
 
-    }
+        // Distributions are used as cache keys
 
-    /** Inserts values in between energy production values at given hours
-     * @param values A array of 24 integer values
-     * @return A array with 1440 integer values
-     */
-    private static int[] smooth(int[] values) {
-        assert values.length == 24;
-        int[] smoothed_values = new int[24*60];
-        for (int i = 0; i < values.length-1; i++) {
-            int difference = values[i+1] - values[i];
-            double step_width = difference / 60.0;
-            for (int j = 0; j < 60; j++) {
-                smoothed_values[60*i + j] = values[i] + (int) (step_width * j);
-            }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Distribution other)) return false;
+            return wind == other.wind && pv == other.pv && water == other.water && nuclear == other.nuclear && coal == other.coal &&
+                    renewable_energy == other.renewable_energy && nonrenewable_energy == other.nonrenewable_energy && weak_distribution == other.weak_distribution;
         }
-        return smoothed_values;
-    }
 
-    // Values in %
-    private static int[] wind_farm(Weather weather) {
-        // Generating values on a per hour basis
-        Random random = new Random();
-        int[] values = new int[24*60];
-        values[0] = 45;
-        for (int i = 1; i < values.length; i++) {
-            // Wind blow can be a bit random A value between -5 and 5 is added to the last value each time.
-            // Math.min prevents greater 100 values, Math.max sub 0 values.
-            values[i] = Math.min(Math.max(values[i-1] + (5 - random.nextInt(10)), 0), 100);
+        @Override
+        public int hashCode() {
+            return Objects.hash(wind, pv, water, nuclear, coal, renewable_energy, nonrenewable_energy, weak_distribution);
         }
-        double multiplier;
-        switch (weather.wind_speed) {
-            case MUCH -> multiplier = 1.5;
-            case A_NORMAL_AMOUNT_OF -> multiplier = 1;
-            case NO -> multiplier = 0.2;
-            default -> throw new IllegalStateException("Unexpected value: " + weather.cloudiness);
+
+        @Override
+        public String toString() {
+            return weak_distribution ?
+                    String.format("renewable=%s nonrenewable=%s", renewable_energy, nonrenewable_energy) :
+                    String.format("wind=%s pv=%s water=%s nuclear=%s coal=%s", wind, pv, water, nuclear, coal);
         }
-        for (int i = 0; i < 24; i++) {
-            values[i] *= multiplier;
-            values[i] = Math.min(100, values[i]);
+    }
+
+    // Values in %, generated on a per hour basis. The values in between are interpolated while building the snapshot.
+
+    private static int[] consumption(Random_Stream random) {
+        int[] consumption = {35, 32, 30, 30, 30, 32, 36, 50, 57, 54, 48, 48, 51, 57, 50, 45, 40, 50, 65, 80, 82, 65, 53, 45, 40};
+        for (int i = 0; i < consumption.length; i++) {
+            consumption[i] += random.nextInt(6);
         }
-        return values;
+        return consumption;
     }
 
-    private static int[] pv_farm (Weather weather) {
-        Random random = new Random();
+    private static int[] pv_farm (Weather weather, Random_Stream random) {
         int[] values = new int[24];
         for (int i = 0; i < 24; i++) {
             // The further away i is from 13 (sunniest time) the smaller the value gets. Math.max prevents sub 0 values.
@@ -118,71 +121,223 @@ public class Electricity_Grid {
         for (int i = 0; i < 24; i++) {
             values[i] *= multiplier;
         }
-        return smooth(values);
-    }
-
-    private static int[] water_power_plant(Weather weather) {
-        Random random = new Random();
-        int[] values = new int[24*60];
-        for (int i = 0; i < values.length; i++) {
-            values[i] = 70 + random.nextInt(15);
-        }
-        double multiplier;
-        switch (weather.cloudiness) {
-            case SUNNY -> multiplier = 0.7;
-            case CLOUDY, CLEAR -> multiplier = 1;
-            case RAINY -> multiplier = 1.3;
-            default -> throw new IllegalStateException("Unexpected value: " + weather.cloudiness);
-        }
-        for (int i = 0; i < values.length; i++) {
-            values[i] *= multiplier;
-        }
         return values;
     }
 
-    private static int[] nuclear_power_plant (int fixed_production) {
-        Random random = new Random();
+    private static int[] nuclear_power_plant (int fixed_production, Random_Stream random) {
         int[] values = new int[24];
         for (int i = 0; i < 24; i++) {
             values[i] = fixed_production + random.nextInt(6);
         }
-        return smooth(values);
+        return values;
     }
 
-    private static int[] nuclear_power_plant () {return nuclear_power_plant(94);}
+    private static int[] nuclear_power_plant (Random_Stream random) {return nuclear_power_plant(94, random);}
 
-    private static int[] coal_fired_power_station () {return nuclear_power_plant(80);}
+    private static int[] coal_fired_power_station (Random_Stream random) {return nuclear_power_plant(80, random);}
+
+    /** Inserts values in between energy production values at given hours, the values of the last hour are 0
+     * @param values The values per hour | e.g. 24 values
+     * @param minute The minute of the day | e.g. 743
+     * @return The interpolated value of the minute
+     */
+    private static int smooth(int[] values, int minute) {
+        int hour = minute / 60;
+        if (hour + 1 >= values.length) return 0;
+        double step_width = (values[hour+1] - values[hour]) / 60.0;
+        return values[hour] + (int) (step_width * (minute % 60));
+    }
+
+    private static double wind_multiplier(Weather weather) {
+        return switch (weather.wind_speed) {
+            case MUCH -> 1.5;
+            case A_NORMAL_AMOUNT_OF -> 1;
+            case NO -> 0.2;
+        };
+    }
+
+    private static double water_multiplier(Weather weather) {
+        return switch (weather.cloudiness) {
+            case SUNNY -> 0.7;
+            case CLOUDY, CLEAR -> 1;
+            case RAINY -> 1.3;
+        };
+    }
 
     /**
-     * Stores the energy ratio over one day per minute and the weather of the day.
+     * Stores the weather and the hourly values of the energy sources of one day, which only depend on the seed and the day.
+     * Each source has it's own random stream and is generated lazily upon first access. Wind and water change every minute,
+     * their streams are replayed while building a snapshot instead of being stored.
+     * Concurrent first accesses may generate a source twice, which is harmless because the result is the same.
      */
-    public class Electricity_Snapshot {
-        public final int[] total_energy;
-        public final int[] production;
-        public final int[] consumption;
+    public static class Day_Sources {
         public final Weather weather;
+        private final Random_Streams random_streams;
+        private final int day;
+
+        private volatile int[] pv, nuclear, coal, consumption;
+
+        Day_Sources(Random_Streams random_streams, int day) {
+            this.random_streams = random_streams;
+            this.day = day;
+            this.weather = new Weather(random_streams.stream("weather", day));
+        }
+
+        private Random_Stream getWind_random() {
+            return random_streams.stream("wind", day);
+        }
+
+        private Random_Stream getWater_random() {
+            return random_streams.stream("water", day);
+        }
+
+        private int[] getPv() {
+            if (pv == null) pv = pv_farm(weather, random_streams.stream("pv", day));
+            return pv;
+        }
+
+        private int[] getNuclear() {
+            if (nuclear == null) nuclear = nuclear_power_plant(random_streams.stream("nuclear", day));
+            return nuclear;
+        }
+
+        private int[] getCoal() {
+            if (coal == null) coal = coal_fired_power_station(random_streams.stream("coal", day));
+            return coal;
+        }
+
+        private int[] getConsumption() {
+            if (consumption == null) consumption = consumption(random_streams.stream("consumption", day));
+            return consumption;
+        }
+    }
 
-        Electricity_Snapshot (int[] production, int[] consumption, Weather weather) {
-            this.production = production;
-            this.consumption = consumption;
-            total_energy = new int[production.length];
-            for (int i = 0; i < production.length; i++) {
-                total_energy[i] = production[i] - consumption[i];
+    /**
+     * Stores the energy ratio over one day per minute and the weather of the day.
+     * The values are built in a single pass upon first access, sources with a proportion of 0 are never generated.
+     * Buffer snapshots are owned by one grid and overwritten each day, cached snapshots are never changed once built.
+     */
+    public static class Electricity_Snapshot {
+        public Weather weather;
+        private Day_Sources sources;
+        private Distribution distribution;
+        private final boolean buffer; // Whether the arrays are overwritten by the next day
+
+        private final int[] production = new int[24*60];
+        private final int[] consumption = new int[24*60];
+        private final int[] total_energy = new int[24*60];
+        private volatile boolean built = false;
+
+        Electricity_Snapshot (Day_Sources sources, Distribution distribution) {
+            this.sources = sources;
+            this.distribution = distribution;
+            this.weather = sources.weather;
+            this.buffer = false;
+        }
+
+        /**
+         * Creates a empty buffer snapshot.
+         * @see Electricity_Grid#getSnapshot(Distribution, int, Electricity_Snapshot)
+         */
+        Electricity_Snapshot () {
+            this.buffer = true;
+        }
+
+        public int[] getProduction() {
+            if (!built) build();
+            return production;
+        }
+
+        public int[] getConsumption() {
+            if (!built) build();
+            return consumption;
+        }
+
+        public int[] getTotal_energy() {
+            if (!built) build();
+            return total_energy;
+        }
+
+        public int getDay() {
+            return sources.day;
+        }
+
+        /** Overwrites the buffer with the values of another day
+         * @param sources The values of the day
+         * @param distribution The distribution of energy sources
+         */
+        private void rebuild(Day_Sources sources, Distribution distribution) {
+            if (!buffer) throw new IllegalStateException("Only buffer snapshots can be rebuilt.");
+            this.sources = sources;
+            this.distribution = distribution;
+            this.weather = sources.weather;
+            built = false;
+            build();
+        }
+
+        /**
+         * Generates, interpolates, weights and scales every source and calculates the total energy in one pass over the day.
+         */
+        private synchronized void build() {
+            if (built) return;
+            Distribution d = distribution;
+            int wind_weight, pv_weight, water_weight, nuclear_weight, coal_weight;
+            if (d.weak_distribution) { // Renewable sources share one proportion, nonrenewable ones the other
+                wind_weight = pv_weight = water_weight = d.renewable_energy;
+                nuclear_weight = coal_weight = d.nonrenewable_energy;
+            } else {
+                wind_weight = d.wind; pv_weight = d.pv; water_weight = d.water; nuclear_weight = d.nuclear; coal_weight = d.coal;
             }
-            this.weather = weather;
+            int divisor = d.weak_distribution ? d.renewable_energy + d.nonrenewable_energy : wind_weight + pv_weight + water_weight + nuclear_weight + coal_weight;
+
+            // Only sources that contribute to the production are generated
+            Random_Stream wind_random = wind_weight != 0 ? sources.getWind_random() : null;
+            Random_Stream water_random = water_weight != 0 ? sources.getWater_random() : null;
+            int[] pv_values = pv_weight != 0 ? sources.getPv() : null;
+            int[] nuclear_values = nuclear_weight != 0 ? sources.getNuclear() : null;
+            int[] coal_values = coal_weight != 0 ? sources.getCoal() : null;
+            int[] consumption_values = sources.getConsumption();
+            double wind_multiplier = wind_multiplier(weather), water_multiplier = water_multiplier(weather);
+
+            int wind_value = 45; // Wind blow is a random walk that starts at 45%
+            for (int minute = 0; minute < production.length; minute++) {
+                int sum = 0;
+                if (wind_random != null) {
+                    // Wind blow can be a bit random A value between -5 and 5 is added to the last value each time.
+                    // Math.min prevents greater 100 values, Math.max sub 0 values.
+                    if (minute > 0) wind_value = Math.min(Math.max(wind_value + (5 - wind_random.nextInt(10)), 0), 100);
+                    // The weather only affects the first 24 values
+                    sum += (minute < 24 ? Math.min(100, (int) (wind_value * wind_multiplier)) : wind_value) * wind_weight;
+                }
+                if (water_random != null) sum += (int) ((70 + water_random.nextInt(15)) * water_multiplier) * water_weight;
+                if (pv_values != null) sum += smooth(pv_values, minute) * pv_weight;
+                if (nuclear_values != null) sum += smooth(nuclear_values, minute) * nuclear_weight;
+                if (coal_values != null) sum += smooth(coal_values, minute) * coal_weight;
+
+                production[minute] = sum / divisor / 4;
+                consumption[minute] = smooth(consumption_values, minute);
+                total_energy[minute] = production[minute] - consumption[minute];
+            }
+            built = true;
         }
     }
 
-    public class Weather {
+    public static class Weather {
         Cloudiness cloudiness;
         WindSpeed wind_speed;
 
-        Weather() {
-            var random = new Random();
+        Weather(Random_Stream random) {
             cloudiness = Cloudiness.values()[random.nextInt(Cloudiness.values().length)];
             wind_speed = WindSpeed.values()[random.nextInt(WindSpeed.values().length)];
         }
 
+        /**
+         * @return The weather as one number (cloudiness * 16 + wind speed), used by the journal
+         */
+        int code() {
+            return cloudiness.ordinal() * 16 + wind_speed.ordinal();
+        }
+
         @Override
         public String toString() {
             return String.format("It's a %s day with %s wind", cloudiness, wind_speed);
@@ -0,0 +1,173 @@
+import Services.Time;
+
+import java.util.PriorityQueue;
+
+/**
+ * Discrete event core of the grid, used instead of the fixed tick loop in event driven mode.
+ * Future events are stored in a priority queue and the time jumps straight to the next one, cars that are idle or parked
+ * are never touched. Connected cars are charged / discharged each minute, so while cars are connected a dispatch event
+ * is due every minute. A car that is driving or being towed is advanced all at once when it's next event is due (or when
+ * operate() ends), using the same per minute calculations as the fixed tick mode.
+ * @see Grid#setEvent_driven(boolean)
+ */
+public class Event_Scheduler {
+
+    private final Grid grid; // The grid that is operated
+    private final Time time; // The time object of the grid
+    private final PriorityQueue<Event> events = new PriorityQueue<>();
+    private int sequence = 0; // Keeps events of the same minute and type in the order they were scheduled
+    private int counted = -1; // The first minute whose deficit is not counted yet while no car is connected, -1 if cars are connected
+
+    Event_Scheduler(Grid grid) {
+        this.grid = grid;
+        this.time = grid.time;
+    }
+
+    /** Operates the grid for a specified amount of time by processing every event within it
+     * @param minutes How many minutes the grid should operate
+     */
+    void run(int minutes) {
+        int start = time.inMinutes();
+        int end = start + minutes;
+
+        // The cars may have changed between two calls (routes, connections), so the queue is rebuilt each time
+        events.clear();
+        schedule(Event.Type.DAY_ROLLOVER, ceil(start, 24 * 60), start, null);
+        schedule(Event.Type.HOUR_MARK, ceil(start, 60), start, null);
+        for (Electric_Car electric_car : grid.electric_cars) {
+            schedule_car(electric_car, start);
+        }
+        if (!grid.priority_buckets.isEmpty()) schedule(Event.Type.DISPATCH, start, start, null);
+        else counted = start; // Without dispatch events the deficit of the skipped minutes is counted per day
+
+        while (!events.isEmpty() && events.peek().minute < end) {
+            Event event = events.poll();
+            time.addTime(event.minute - time.inMinutes());
+            process(event);
+        }
+
+        // Cars that are still on their way are advanced up to the end
+        for (Event event : events) {
+            if (event.type == Event.Type.ROUTE_END || event.type == Event.Type.TOW_TRUCK_ARRIVAL || event.type == Event.Type.TOW_END) {
+                advance(event.electric_car, end - event.from);
+            }
+        }
+        events.clear();
+        count_undispatched(end);
+        counted = -1;
+        time.addTime(end - time.inMinutes());
+    }
+
+    /** Counts the deficit of the minutes that were skipped since no car is connected, up to the specified minute
+     * @param minute The first minute that is not counted (at most the next day rollover)
+     */
+    private void count_undispatched(int minute) {
+        if (counted < 0 || minute <= counted) return;
+        int day_start = counted / (24 * 60) * (24 * 60);
+        grid.count_undispatched(counted - day_start, minute - day_start);
+        counted = minute;
+    }
+
+    private void process(Event event) {
+        switch (event.type) {
+            case DAY_ROLLOVER -> {
+                count_undispatched(event.minute);
+                grid.start_day();
+                schedule(Event.Type.DAY_ROLLOVER, event.minute + 24 * 60, event.minute, null);
+            }
+            case HOUR_MARK -> {
+                grid.printTime();
+                schedule(Event.Type.HOUR_MARK, event.minute + 60, event.minute, null);
+            }
+            case ROUTE_END, TOW_TRUCK_ARRIVAL, TOW_END -> {
+                advance(event.electric_car, event.minute - event.from + 1);
+                schedule_car(event.electric_car, event.minute + 1);
+            }
+            case DISPATCH -> {
+                // Connected cars are charged / discharged every minute, the cars can't disconnect while the grid operates
+                grid.manage_connected_cars();
+                schedule(Event.Type.DISPATCH, event.minute + 1, event.minute, null);
+            }
+        }
+    }
+
+    /** Schedules the next event of a car according to it's state
+     * @param electric_car The car
+     * @param from The first minute in which the car is advanced again
+     */
+    private void schedule_car(Electric_Car electric_car, int from) {
+        switch (electric_car.state.getDescriptor()) {
+            case DRIVING -> {
+                int ticks = electric_car.ticks_until_route_end();
+                schedule(Event.Type.ROUTE_END, ticks == -1 ? Integer.MAX_VALUE : from + ticks - 1, from, electric_car);
+            }
+            case BEING_TOWED -> {
+                int ticks = electric_car.ticks_until_tow_truck_arrival();
+                if (ticks > 0) schedule(Event.Type.TOW_TRUCK_ARRIVAL, from + ticks - 1, from, electric_car);
+                else schedule(Event.Type.TOW_END, from + electric_car.ticks_until_tow_end() - 1, from, electric_car);
+            }
+            default -> { }
+        }
+    }
+
+    /** Advances a driving or towed car by the specified amount of minutes
+     * @param electric_car The car
+     * @param minutes How many minutes should be simulated
+     */
+    private void advance(Electric_Car electric_car, int minutes) {
+        for (int i = 0; i < minutes; i++) {
+            switch (electric_car.state.getDescriptor()) {
+                case DRIVING -> electric_car.tick_drive();
+                case BEING_TOWED -> electric_car.tick_be_towed();
+                default -> { return; }
+            }
+        }
+    }
+
+    private void schedule(Event.Type type, int minute, int from, Electric_Car electric_car) {
+        events.add(new Event(type, minute, from, electric_car, sequence++));
+    }
+
+    /**
+     * @return The smallest multiple of step that is greater or equal to value
+     */
+    private static int ceil(int value, int step) {
+        return (value + step - 1) / step * step;
+    }
+
+    /**
+     * A event that is due at a specific minute. Events of the same minute are processed in the order of their types,
+     * which equals the order of a fixed tick.
+     */
+    private static class Event implements Comparable<Event> {
+        final Type type;
+        final int minute; // The minute in which the event is due
+        final int from; // The first minute that was not simulated yet for the car of the event
+        final Electric_Car electric_car; // The car of the event, null for grid events
+        final int sequence;
+
+        Event(Type type, int minute, int from, Electric_Car electric_car, int sequence) {
+            this.type = type;
+            this.minute = minute;
+            this.from = from;
+            this.electric_car = electric_car;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Event other) {
+            if (minute != other.minute) return Integer.compare(minute, other.minute);
+            if (type != other.type) return type.compareTo(other.type);
+            return Integer.compare(sequence, other.sequence);
+        }
+
+        enum Type {
+            DAY_ROLLOVER, // A new day starts, the electricity snapshot is generated
+            HOUR_MARK, // The time is printed
+            ROUTE_END, // A car reaches it's destination or runs out of energy
+            TOW_TRUCK_ARRIVAL, // The towing vehicle reaches a discharged car
+            TOW_END, // The towing vehicle reaches the destination
+            DISPATCH // The connected cars get their priorities and the energy is distributed among them
+        }
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Arrays;
+
+/**
+ * Columnar (struct of arrays) storage for the hot fields of a fleet.
+ * Each attached electric car owns one row and becomes a view onto it, the tick loops then run over primitive arrays
+ * instead of thousands of car and state objects. The rows are aligned with the indices of the grid's car registry.
+ * The columnar fleet doesn't save memory: the cars and their states stay complete objects (the fields that moved into a
+ * row are simply unused while attached) and the rows come on top of them. With Models.Random cars an attached car takes
+ * about 490 bytes instead of about 410 bytes, so 1M cars need roughly half a GB in both modes. Only the tick loops get
+ * faster, as they touch a few arrays instead of the objects.
+ * @see Grid#setColumnar_fleet(boolean)
+ * @see Electric_Car#attach(Fleet_State, int)
+ */
+public class Fleet_State {
+
+    // Hot fields of the cars, one entry per row
+    double[] charge_status;
+    double[] capacity;
+    double[] energy_consumption;
+    double[] speed;
+    Charging_Curve[] charging_curves; // The charging curve of the connected v2g unit, null if none is connected
+
+    // Hot fields of the states, one entry per row
+    byte[] descriptor; // The ordinal of the Electric_Car.State.Descriptor
+    double[] total_route_length;
+    double[] remaining_route_length;
+    double[] remaining_time_penalty;
+
+    private int size = 0;
+
+    // Descriptor ordinals used by the tick loops
+    private static final byte DRIVING = (byte) Electric_Car.State.Descriptor.DRIVING.ordinal();
+    private static final byte BEING_TOWED = (byte) Electric_Car.State.Descriptor.BEING_TOWED.ordinal();
+    private static final byte CONNECTED_CHARGING = (byte) Electric_Car.State.Descriptor.CONNECTED_CHARGING.ordinal();
+    private static final byte CONNECTED_DISCHARGING = (byte) Electric_Car.State.Descriptor.CONNECTED_DISCHARGING.ordinal();
+    private static final byte CONNECTED_IDLE = (byte) Electric_Car.State.Descriptor.CONNECTED_IDLE.ordinal();
+
+    /**
+     * @param initial_capacity How many rows should be allocated upfront | e.g. 1_000_000
+     */
+    Fleet_State(int initial_capacity) {
+        resize(Math.max(initial_capacity, 16));
+    }
+
+    private void resize(int rows) {
+        charge_status = Arrays.copyOf(charge_status == null ? new double[0] : charge_status, rows);
+        capacity = Arrays.copyOf(capacity == null ? new double[0] : capacity, rows);
+        energy_consumption = Arrays.copyOf(energy_consumption == null ? new double[0] : energy_consumption, rows);
+        speed = Arrays.copyOf(speed == null ? new double[0] : speed, rows);
+        charging_curves = Arrays.copyOf(charging_curves == null ? new Charging_Curve[0] : charging_curves, rows);
+        descriptor = Arrays.copyOf(descriptor == null ? new byte[0] : descriptor, rows);
+        total_route_length = Arrays.copyOf(total_route_length == null ? new double[0] : total_route_length, rows);
+        remaining_route_length = Arrays.copyOf(remaining_route_length == null ? new double[0] : remaining_route_length, rows);
+        remaining_time_penalty = Arrays.copyOf(remaining_time_penalty == null ? new double[0] : remaining_time_penalty, rows);
+    }
+
+    /** Copies the hot fields of the car into a new row and turns the car into a view onto it
+     * @param electric_car The car that should be attached
+     * @return row : int | The row of the car
+     */
+    int attach(Electric_Car electric_car) {
+        if (size == charge_status.length) resize(size * 2);
+        int row = size++;
+        charge_status[row] = electric_car.getCharge_status();
+        capacity[row] = electric_car.getCapacity();
+        energy_consumption[row] = electric_car.energy_consumption;
+        speed[row] = electric_car.getSpeed();
+        charging_curves[row] = electric_car.v2g_unit != null ? electric_car.v2g_unit.getCharging_curve() : null;
+
+        Electric_Car.State state = electric_car.state;
+        descriptor[row] = (byte) state.getDescriptor().ordinal();
+        total_route_length[row] = state.getTotal_route_length();
+        remaining_route_length[row] = state.getRemaining_route_length();
+        remaining_time_penalty[row] = state.getRemaining_time_penalty();
+
+        electric_car.attach(this, row);
+        return row;
+    }
+
+    /** Detaches the car of the row and moves the last row into the freed row (mirrors Registry#remove)
+     * @param row The row that should be removed
+     * @param electric_cars The cars of the fleet, aligned with the rows after the removal
+     */
+    void remove(int row, Electric_Car[] electric_cars) {
+        int last = --size;
+        if (row != last) {
+            charge_status[row] = charge_status[last];
+            capacity[row] = capacity[last];
+            energy_consumption[row] = energy_consumption[last];
+            speed[row] = speed[last];
+            charging_curves[row] = charging_curves[last];
+            descriptor[row] = descriptor[last];
+            total_route_length[row] = total_route_length[last];
+            remaining_route_length[row] = remaining_route_length[last];
+            remaining_time_penalty[row] = remaining_time_penalty[last];
+            electric_cars[row].attach(this, row);
+        }
+        charging_curves[last] = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Advances every row by one tick. Driving and towed rows are advanced in place, connected rows get their charging priority.
+     * @param tick_speed The tick speed of the grid
+     * @param electric_cars The cars of the fleet, used for priorities, logging and state switches
+     * @param charging_priorities A array with at least size() entries that stores the calculated priorities, null if not connected
+     */
+    void tick(int tick_speed, Electric_Car[] electric_cars, Electric_Car.ChargingPriority[] charging_priorities) {
+        for (int row = 0; row < size; row++) {
+            byte row_descriptor = descriptor[row];
+            charging_priorities[row] = null;
+            if (row_descriptor == DRIVING) {
+                tick_drive(row, tick_speed, electric_cars[row]);
+            } else if (row_descriptor == BEING_TOWED) {
+                tick_be_towed(row, tick_speed, electric_cars[row]);
+            } else if (row_descriptor == CONNECTED_CHARGING || row_descriptor == CONNECTED_DISCHARGING || row_descriptor == CONNECTED_IDLE) {
+                charging_priorities[row] = electric_cars[row].cached_charging_priority();
+            }
+        }
+    }
+
+    /**
+     * Drives the row for the length of one tick.
+     * @see Electric_Car#tick_drive()
+     */
+    private void tick_drive(int row, int tick_speed, Electric_Car electric_car) {
+        double traveled_distance = (speed[row]/60) * tick_speed;
+        double remaining = remaining_route_length[row];
+        double stored_energy = capacity[row] * (charge_status[row] / 100.0);
+        double remaining_capacity = stored_energy - traveled_distance * (energy_consumption[row] / 100);
+        // If the remaining route length is still inside the capacity spectrum the tick is still possible
+        boolean big_tick_speed_prevention = stored_energy - remaining * (energy_consumption[row] / 100) >= 0;
+
+        if (remaining_capacity >= 0.0 || big_tick_speed_prevention) {
+            charge_status[row] = (remaining_capacity / capacity[row]) * 100;
+        } else {
+            electric_car.call_towing_service();
+            return;
+        }
+
+        if (remaining - traveled_distance > 0.0) remaining_route_length[row] = remaining - traveled_distance;
+        else electric_car.finish_route();
+    }
+
+    /**
+     * Advances the towed row for the length of one tick.
+     * @see Electric_Car#tick_be_towed()
+     */
+    private void tick_be_towed(int row, int tick_speed, Electric_Car electric_car) {
+        double penalty = remaining_time_penalty[row];
+        if (penalty > 0) remaining_time_penalty[row] = penalty - tick_speed <= 0 ? -1 : penalty - tick_speed;
+        else {
+            double traveled_distance = 70.0 / 60 * tick_speed;
+            if (remaining_route_length[row] - traveled_distance > 0) remaining_route_length[row] = remaining_route_length[row] - traveled_distance;
+            else electric_car.finish_towing();
+        }
+    }
+
+    /** Charges the specified connected rows for the length of one tick.
+     * @param rows The rows that should be charged
+     * @param count How many entries of rows are used
+     * @param tick_speed The tick speed of the grid
+     * @param energy A array that holds the maximal energy per entry of rows in kWh, the charged energy is stored in it
+     * @return The charged energy of all rows in kWh
+     * @see V2G_Unit#tick_charge(double)
+     */
+    double charge(int[] rows, int count, int tick_speed, double[] energy) {
+        double total = 0.0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            Charging_Curve charging_curve = charging_curves[row];
+            double charge = Math.min(charging_curve.charge(charge_status[row], tick_speed), energy[i]);
+            charge_status[row] = charging_curve.charge_status_after(charge_status[row], charge);
+            descriptor[row] = charge > 0.0 ? CONNECTED_CHARGING : CONNECTED_IDLE;
+            energy[i] = charge;
+            total += charge;
+        }
+        return total;
+    }
+
+    /** Discharges the specified connected rows for the length of one tick, the whole minutes a row can discharge without
+     * undercutting it's floor or exceeding it's energy are calculated in one step (like for a single V2G unit).
+     * @param rows The rows that should be discharged
+     * @param count How many entries of rows are used
+     * @param tick_speed The tick speed of the grid
+     * @param floor The charge status that must not be undercut per entry of rows in %
+     * @param energy A array that holds the maximal energy per entry of rows in kWh, the energy that was fed into the grid is stored in it
+     * @return The energy that was fed into the grid by all rows in kWh
+     * @see V2G_Unit#tick_discharge(double)
+     * @see Charging_Curve#discharge_minutes(double, double, double, int)
+     */
+    double discharge(int[] rows, int count, int tick_speed, double[] floor, double[] energy) {
+        double total = 0.0;
+        for (int i = 0; i < count; i++) {
+            int row = rows[i];
+            Charging_Curve charging_curve = charging_curves[row];
+            int minutes = charging_curve.discharge_minutes(charge_status[row], floor[i], energy[i], tick_speed);
+            if (minutes > 0) { // A row that can't discharge keeps it's charge status untouched
+                charge_status[row] = charging_curve.discharge_status_after(charge_status[row], minutes);
+                descriptor[row] = CONNECTED_DISCHARGING;
+            }
+            energy[i] = charging_curve.discharge_energy(minutes);
+            total += energy[i];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.Serial;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that advances a partition of the fleet by one tick.
+ * Cars are independent within a tick, so each partition is split until it is small enough to be processed directly.
+ * The calculated charging priorities are written into a array with the same order as the fleet, which allows the grid
+ * to merge them deterministically afterwards.
+ * @see Grid#manage_cars()
+ */
+public class Fleet_Tick_Task extends RecursiveAction {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    static final int PARTITION_SIZE = 512; // Partitions with less cars are not split any further
+
+    private final Electric_Car[] electric_cars; // The complete fleet
+    private final Electric_Car.ChargingPriority[] charging_priorities; // The calculated priority of each car, null if not connected
+    private final int from; // The first index of the partition (inclusive)
+    private final int to; // The last index of the partition (exclusive)
+
+    /**
+     * @param electric_cars The complete fleet
+     * @param charging_priorities A array with the same length as the fleet that stores the calculated priorities
+     * @param from The first index of the partition (inclusive)
+     * @param to The last index of the partition (exclusive)
+     */
+    Fleet_Tick_Task(Electric_Car[] electric_cars, Electric_Car.ChargingPriority[] charging_priorities, int from, int to) {
+        this.electric_cars = electric_cars;
+        this.charging_priorities = charging_priorities;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= PARTITION_SIZE) {
+            for (int i = from; i < to; i++) {
+                charging_priorities[i] = tick(electric_cars[i]);
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new Fleet_Tick_Task(electric_cars, charging_priorities, from, middle), new Fleet_Tick_Task(electric_cars, charging_priorities, middle, to));
+        }
+    }
+
+    /** Advances a car by one tick according to it's state
+     * @param electric_car The car that should be advanced
+     * @return charging_priority : ChargingPriority | The charging priority if the car is connected, else null
+     */
+    static Electric_Car.ChargingPriority tick(Electric_Car electric_car) {
+        Electric_Car.ChargingPriority charging_priority = null;
+        switch (electric_car.state.getDescriptor()) {
+            case DRIVING -> electric_car.tick_drive();
+            case BEING_TOWED -> electric_car.tick_be_towed();
+            case CONNECTED_CHARGING, CONNECTED_DISCHARGING, CONNECTED_IDLE -> charging_priority = electric_car.cached_charging_priority();
+            default -> { }
+        }
+        return charging_priority;
+    }
+}
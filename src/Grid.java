@@ -1,8 +1,13 @@
 import Services.ASCII_sprites;
+import Services.Clock;
 import Services.Out;
+import Services.Random_Stream;
+import Services.Random_Streams;
 import Services.Time;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The central class of the simulation. The grid stores assigned electric cars and v2g units.
@@ -13,27 +18,100 @@ import java.util.*;
  * @see Electricity_Grid
  */
 public class Grid implements Out {
-    // Similar to Python dic / stores all electric cars / v2g units with their corresponding ids
-    Hashtable<String , Electric_Car> electric_cars = new Hashtable<>();
-    Hashtable<String , V2G_Unit> v2g_units = new Hashtable<>();
+    // Stores all electric cars / v2g units densely by index, with their corresponding ids as secondary lookup
+    final Registry<Electric_Car> electric_cars = new Registry<>(Electric_Car[]::new);
+    final Registry<V2G_Unit> v2g_units = new Registry<>(V2G_Unit[]::new);
 
     final Time time = new Time("01-00:00"); // The time object of the current grid
     private int tick_speed = 1; // How many minutes should be passed per tick
 
+    private boolean parallel_ticks = false; // Whether the cars should be ticked concurrently
+    private ForkJoinPool fork_join_pool = ForkJoinPool.commonPool(); // The pool that is used for parallel ticks
+
+    Fleet_State fleet_state; // Columnar storage of the fleet's hot fields, null in object mode
+
+    private Event_Scheduler event_scheduler; // Schedules the future events in event driven mode, null in fixed tick mode
+
+    // The connected cars grouped by their charging priority, cars only move between the buckets when their priority changes
+    final Priority_Buckets priority_buckets = new Priority_Buckets();
+    private Electric_Car.ChargingPriority[] charging_priorities = new Electric_Car.ChargingPriority[0]; // Reused by the tick loops
+
+    private final Dispatcher dispatcher = new Dispatcher(this); // Distributes the surplus / deficit among the connected cars
+    private double grid_power = 10_000; // The power that equals 100% in the electricity snapshot in kW | e.g. 10000kW
+    private Day_Ahead_Scheduler day_ahead_scheduler; // Plans the connected cars once per day, null if they are dispatched tick by tick
+
+    private Journal journal; // Records the state changes of the run, null if no journal is written
+
+    public final Log_Level log_level; // The log level of the grid, NONE also hides the sprite
+
+    // Statistics of the run (since the grid was created or restored), e.g. to compare scenarios
+    private long deficit_minutes = 0; // Minutes in which the cars covered less than 99% of the grid's deficit
+    private double uncovered_deficit = 0.0; // The deficit the cars didn't cover in kWh
+    private final LongAdder towing_events = new LongAdder(); // Cars can call the towing service concurrently (parallel ticks)
+
     // A Distribution object which is used to calculate the electricity snapshot every day
     public Electricity_Grid.Distribution energy_distribution;
 
+    // The seeded source of every random value of the simulation (weather, power plants, ids, models, cars)
+    final Random_Streams random_streams;
+    final Random_Stream id_random; // The random stream used to generate ids
+    final Random_Stream model_random; // The random stream used by Models.Random()
+    int created_cars = 0; // Counts the created cars, each car gets it's own random stream
+
     // A object of the electricity grid class, responsible for providing consumption and production
-    private final Electricity_Grid electricity_grid = new Electricity_Grid();
-    private Electricity_Grid.Electricity_Snapshot electricity_snapshot;
+    private final Electricity_Grid electricity_grid;
+    private Electricity_Grid.Electricity_Snapshot electricity_snapshot; // Buffer that is rebuilt each day
 
     /**
      * Generates a new Grid object.
      * @param energy_distribution Specifies the distribution of energy sources used by the underlying electricity grid.
+     * @param seed The seed of all random values, runs with the same seed (and the same inputs) are reproducible.
      */
-    Grid(Electricity_Grid.Distribution energy_distribution) {
-        System.out.println(ASCII_sprites.computer);
+    Grid(Electricity_Grid.Distribution energy_distribution, long seed) {
+        this(energy_distribution, seed, Log_Level.ALL);
+    }
+
+    /**
+     * Generates a new Grid object with the specified log level.
+     * @param log_level The log level of the grid | e.g. Log_Level.NONE for runs without any output
+     * @see #Grid(Electricity_Grid.Distribution, long)
+     */
+    Grid(Electricity_Grid.Distribution energy_distribution, long seed, Log_Level log_level) {
+        this(energy_distribution, seed, log_level, new Snapshot_Cache());
+    }
+
+    /**
+     * Generates a new Grid object that shares the generated days with other grids.
+     * @param snapshot_cache The cache of the generated days, grids with the same seed reuse each other's days | e.g. new Snapshot_Cache()
+     * @see #Grid(Electricity_Grid.Distribution, long, Log_Level)
+     */
+    Grid(Electricity_Grid.Distribution energy_distribution, long seed, Log_Level log_level, Snapshot_Cache snapshot_cache) {
+        this.log_level = log_level;
+        if (log_level != Log_Level.NONE) {
+            Out.flush(); // Keeps the sprite behind the buffered output
+            System.out.println(ASCII_sprites.computer);
+        }
         this.energy_distribution = energy_distribution;
+        this.random_streams = new Random_Streams(seed);
+        this.id_random = random_streams.stream("ids");
+        this.model_random = random_streams.stream("models");
+        this.electricity_grid = new Electricity_Grid(random_streams, snapshot_cache);
+        print("Seed: %s", Log_Level.INFO, seed);
+    }
+
+    /**
+     * Generates a new Grid object with a random seed.
+     * @see #Grid(Electricity_Grid.Distribution, long)
+     */
+    Grid(Electricity_Grid.Distribution energy_distribution) {
+        this(energy_distribution, new Random_Streams().getSeed());
+    }
+
+    /**
+     * @return A new random stream for the next created car
+     */
+    Random_Stream create_car_random() {
+        return random_streams.stream("car", created_cars++);
     }
 
     /** Registers the electric_car in the grid and returns a unique ID
@@ -41,9 +119,19 @@ public class Grid implements Out {
      * @return the ID
      */
     public String register(Electric_Car electric_car) {
-        String id = generate_id_recursive(true); // Generate a unique ID
+        return register(electric_car, generate_id_recursive(true)); // Generate a unique ID
+    }
 
-        electric_cars.put(id, electric_car); // Add the car to the Hashtable ("register it")
+    /** Registers the electric_car with a known ID, e.g. when restoring a checkpoint
+     * @param electric_car the electric_car
+     * @param id the unique ID
+     * @return the ID
+     * @throws IllegalArgumentException if the ID is already in use
+     */
+    String register(Electric_Car electric_car, String id) {
+        electric_cars.add(id, electric_car); // Add the car to the registry ("register it")
+        if (fleet_state != null) fleet_state.attach(electric_car); // Rows are aligned with the registry indices
+        if (journal != null) journal_registration(electric_car, id);
         return id;
     }
 
@@ -52,11 +140,61 @@ public class Grid implements Out {
      * @return the ID
      */
     public String register(V2G_Unit v2g_unit) {
-        String id = generate_id_recursive(false); // Generate a unique ID
+        return register(v2g_unit, generate_id_recursive(false)); // Generate a unique ID
+    }
 
-        v2g_units.put(id, v2g_unit); // Add the V2g_Unit to the Hashtable ("register it")
+    /** Registers the v2g_unit with a known ID, e.g. when restoring a checkpoint
+     * @param v2g_unit the v2g_unit
+     * @param id the unique ID
+     * @return the ID
+     * @throws IllegalArgumentException if the ID is already in use
+     */
+    String register(V2G_Unit v2g_unit, String id) {
+        v2g_units.add(id, v2g_unit); // Add the V2g_Unit to the registry ("register it")
         return id;
-}
+    }
+
+    /** Removes the electric_car from the grid. The car needs to be disconnected from it's v2g unit first.
+     * @param electric_car the electric_car
+     * @return successful : boolean | Whether the car was removed
+     */
+    public boolean unregister(Electric_Car electric_car) {
+        boolean successful;
+        if (electric_car.v2g_unit != null) {
+            print("Electric car with ID %s needs to be disconnected before it can be unregistered.", Log_Level.ERROR, electric_car.grid_id);
+            successful = false;
+        } else {
+            int index = electric_cars.indexOf(electric_car.grid_id);
+            successful = electric_cars.remove(electric_car.grid_id) != null;
+            if (successful) { // The last car was swapped into the freed index
+                priority_buckets.move(electric_cars.size(), index);
+                dispatcher.move(electric_cars.size(), index);
+            }
+            if (successful && fleet_state != null) {
+                electric_car.detach();
+                fleet_state.remove(index, electric_cars.elements());
+            }
+            if (successful && journal != null) {
+                journal.append(Journal.Type.UNREGISTERED, 0, Journal.id(electric_car), time.asEpochMinute(), electric_car.getCharge_status(), 0, 0);
+            }
+        }
+        return successful;
+    }
+
+    /** Removes the v2g_unit from the grid. The unit must not have a connected car.
+     * @param v2g_unit the v2g_unit
+     * @return successful : boolean | Whether the unit was removed
+     */
+    public boolean unregister(V2G_Unit v2g_unit) {
+        boolean successful;
+        if (v2g_unit.isConnected()) {
+            print("V2G unit with ID %s needs to be disconnected before it can be unregistered.", Log_Level.ERROR, v2g_unit.grid_id);
+            successful = false;
+        } else {
+            successful = v2g_units.remove(v2g_unit.grid_id) != null;
+        }
+        return successful;
+    }
 
     /** Generates a unique id
      * @param for_car Whether the ID should be generated for a car (true) or for a V2G_Unit (false)
@@ -67,8 +205,8 @@ public class Grid implements Out {
         String id;
 
         do { // First ever use case of a do while loop
-            // Generates a random alpha-numeric String, deletes the "-" sign and extracts a substring with a length of 8
-            id = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+            // Generates a random alpha-numeric String with a length of 8
+            id = String.format("%08x", id_random.nextInt());
             // The id is not unique if there is element in the dic assigned to the key
             id_is_not_unique = (for_car ? electric_cars : v2g_units ).get(id) != null;
 
@@ -82,7 +220,7 @@ public class Grid implements Out {
      * @return id : String | A unique ID
      */
     private String generate_id_recursive(boolean for_car) {
-        String id = UUID.randomUUID().toString().replace("-", "").substring(0, 8);
+        String id = String.format("%08x", id_random.nextInt());
         return (for_car ? electric_cars : v2g_units ).get(id) == null ? id : generate_id_recursive(for_car);
     }
 
@@ -92,6 +230,10 @@ public class Grid implements Out {
      */
     public void operate(int minutes) {
         // TODO: 2/11/2021 Add operate code
+        if (event_scheduler != null) { // Jump from event to event instead
+            event_scheduler.run(minutes);
+            return;
+        }
         int start_time = time.inMinutes();
         while (time.inMinutes() < start_time + minutes) {
             tick();
@@ -104,8 +246,7 @@ public class Grid implements Out {
     private void tick() {
         // TODO: 2/11/2021 Add tick Code
         if (time.inMinutesWithHoursIsolated() == 0) { // Print the weather on a new day
-            electricity_snapshot = electricity_grid.getSnapshot(energy_distribution);
-            print(String.format("Day %s: %s", time.inDaysIsolated(), electricity_snapshot.weather.toString()) , Log_Level.INFO);
+            start_day();
         }
         if (time.inMinutesIsolated() == 0) { // Print the time each hour
             printTime();
@@ -115,14 +256,84 @@ public class Grid implements Out {
         time.addTime(tick_speed);
     }
     
+    /**
+     * Generates the electricity snapshot of the new day and prints the weather.
+     */
+    void start_day() {
+        electricity_snapshot = electricity_grid.getSnapshot(energy_distribution, Clock.day(time.asEpochMinute()), electricity_snapshot);
+        print("Day %s: %s", Log_Level.INFO, time.inDaysIsolated(), electricity_snapshot.weather);
+        if (journal != null) journal_snapshot();
+        if (day_ahead_scheduler != null) day_ahead_scheduler.plan(electricity_snapshot);
+    }
+
+    /** Returns the electricity snapshot of any day, e.g. to revisit past days. The values equal the ones the grid
+     * operated with, but unlike the buffer of the current day the snapshot is cached and never overwritten.
+     * @param day The day | e.g. 3
+     * @return The snapshot of the day with the distribution of this grid
+     */
+    public Electricity_Grid.Electricity_Snapshot getSnapshot(int day) {
+        return electricity_grid.getSnapshot(energy_distribution, day);
+    }
+
+    /** Starts or stops writing a journal of the run. The cars that are already registered are written first.
+     * @param journal The journal, null to stop writing one (the journal is not closed)
+     * @see Journal
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+        if (journal == null) return;
+        Electric_Car[] fleet = electric_cars.elements();
+        for (int i = 0; i < electric_cars.size(); i++) {
+            journal_registration(fleet[i], fleet[i].grid_id);
+            journal.state_change(fleet[i], time.asEpochMinute());
+            if (priority_buckets.get(i) != null) journal_priority(fleet[i], priority_buckets.get(i));
+        }
+    }
+
+    /**
+     * @return The day of the current electricity snapshot, -1 if no day was started yet
+     */
+    int getSnapshot_day() {
+        return electricity_snapshot != null ? electricity_snapshot.getDay() : -1;
+    }
+
+    /** Rebuilds the electricity snapshot of a day without starting it (e.g. when restoring a checkpoint)
+     * @param day The day | e.g. 3
+     */
+    void restore_snapshot(int day) {
+        electricity_snapshot = electricity_grid.getSnapshot(energy_distribution, day, electricity_snapshot);
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    private void journal_registration(Electric_Car electric_car, String id) {
+        journal.append(Journal.Type.REGISTERED, 0, Integer.parseUnsignedInt(id, 16), time.asEpochMinute(), electric_car.getCapacity(), electric_car.energy_consumption, electric_car.getCharge_status());
+    }
+
+    private void journal_snapshot() {
+        long production = 0, consumption = 0, total_energy = 0;
+        for (int i = 0; i < 24*60; i++) {
+            production += electricity_snapshot.getProduction()[i];
+            consumption += electricity_snapshot.getConsumption()[i];
+            total_energy += electricity_snapshot.getTotal_energy()[i];
+        }
+        journal.append(Journal.Type.SNAPSHOT, electricity_snapshot.weather.code(), Clock.day(time.asEpochMinute()), time.asEpochMinute(), production, consumption, total_energy);
+    }
+
+    private void journal_priority(Electric_Car electric_car, Electric_Car.ChargingPriority charging_priority) {
+        journal.append(Journal.Type.PRIORITY, charging_priority.ordinal(), Journal.id(electric_car), time.asEpochMinute(), electric_car.getCharge_status(), 0, 0);
+    }
+
     public void printTime() {
-        print(String.format("%s", time.asString().substring(3)), Log_Level.INFO);
+        print(time.asTimeOfDayString(), Log_Level.INFO);
     }
 
     public void printV2GUnits() {
         StringBuilder disconnected = new StringBuilder();
         StringBuilder connected = new StringBuilder();
-        for (V2G_Unit v2g_unit : v2g_units.values()) {
+        for (V2G_Unit v2g_unit : v2g_units) {
             if (v2g_unit.isConnected()) {
                 connected.append(v2g_unit.grid_id).append(", ");
             } else {
@@ -132,9 +343,9 @@ public class Grid implements Out {
         if (disconnected.length() == 0 && connected.length() == 0) {
             print("No V2G units are available (Not yet initialized?)", Log_Level.ERROR);
         } else if (disconnected.length() == 0) {
-            print(String.format("No V2G unit is currently available.", connected), Log_Level.WARN);
+            print("No V2G unit is currently available.", Log_Level.WARN, connected);
         } else {
-            print(String.format("The V2G units with ID's [%s] are ready to be used.", disconnected.substring(0, disconnected.length() - 2)), Log_Level.INFO);
+            print("The V2G units with ID's [%s] are ready to be used.", Log_Level.INFO, disconnected.substring(0, disconnected.length() - 2));
         }
     }
 
@@ -142,7 +353,9 @@ public class Grid implements Out {
      * @param tick_speed The desired tickspeed. Needs to be greater than 0.
      */
     public void setTick_speed(int tick_speed) {
-        if (tick_speed >= 1) {
+        if (event_scheduler != null && tick_speed != 1) {
+            throw new IllegalArgumentException("The event driven mode requires a tick speed of 1.");
+        } else if (tick_speed >= 1) {
             this.tick_speed = tick_speed;
         }  else {
             throw new IllegalArgumentException("Tick speed needs to be greater than 0.");
@@ -153,67 +366,232 @@ public class Grid implements Out {
         return tick_speed;
     }
 
+    /** Enables or disables parallel ticks. In parallel mode the fleet is partitioned across a ForkJoinPool each tick.
+     * @param parallel_ticks Whether the cars should be ticked concurrently
+     * @see Fleet_Tick_Task
+     */
+    public void setParallel_ticks(boolean parallel_ticks) {
+        this.parallel_ticks = parallel_ticks;
+    }
+
+    /** Enables parallel ticks on a specific pool
+     * @param fork_join_pool The pool that should be used for parallel ticks | e.g. new ForkJoinPool(4)
+     */
+    public void setParallel_ticks(ForkJoinPool fork_join_pool) {
+        this.fork_join_pool = fork_join_pool;
+        this.parallel_ticks = true;
+    }
+
+    public boolean isParallel_ticks() {
+        return parallel_ticks;
+    }
+
+    /** Switches between object mode and the columnar fleet representation.
+     * In columnar mode the hot fields of every car are stored in primitive arrays and the cars are ticked by tight loops over them.
+     * Takes precedence over parallel ticks.
+     * @param columnar_fleet Whether the fleet should be stored in columns
+     * @see Fleet_State
+     */
+    public void setColumnar_fleet(boolean columnar_fleet) {
+        if (columnar_fleet && fleet_state == null) {
+            fleet_state = new Fleet_State(electric_cars.size());
+            for (Electric_Car electric_car : electric_cars) {
+                fleet_state.attach(electric_car);
+            }
+        } else if (!columnar_fleet && fleet_state != null) {
+            for (Electric_Car electric_car : electric_cars) {
+                electric_car.detach();
+            }
+            fleet_state = null;
+        }
+    }
+
+    public boolean isColumnar_fleet() {
+        return fleet_state != null;
+    }
+
+    /** Switches between the fixed tick mode and the event driven mode.
+     * In event driven mode operate() jumps from one event (route end, tow truck arrival, dispatch, new day, ...) to the next
+     * instead of ticking every car each minute. The results equal the fixed tick mode with a tick speed of 1.
+     * @param event_driven Whether the grid should operate event driven
+     * @throws IllegalStateException if the tick speed is not 1
+     * @see Event_Scheduler
+     */
+    public void setEvent_driven(boolean event_driven) {
+        if (event_driven && tick_speed != 1) throw new IllegalStateException("The event driven mode requires a tick speed of 1.");
+        event_scheduler = event_driven ? new Event_Scheduler(this) : null;
+    }
+
+    public boolean isEvent_driven() {
+        return event_scheduler != null;
+    }
+
     /**
      * Calculates charging priorities for each car that is connected to a V2G Unit and
      * determines which one should be charged / discharged to stabilize the Grid.
+     * Cars only move between the priority buckets when their priority changed, a car with steady inputs reuses it's
+     * last priority.
      */
     public void manage_cars() {
-        // This Hashtable stores each charging priority and all cars that have it
-        Hashtable<Electric_Car.ChargingPriority, ArrayList<Electric_Car>> priority_table = new Hashtable<>();
-        // Initializing the Hashtable
-        for (Electric_Car.ChargingPriority chargingPriority : Electric_Car.ChargingPriority.values()) {
-            priority_table.put(chargingPriority, new ArrayList<>());
-        }
+        Electric_Car[] fleet = electric_cars.elements();
+        int fleet_size = electric_cars.size();
+        if (charging_priorities.length < fleet_size) charging_priorities = new Electric_Car.ChargingPriority[Math.max(fleet_size, charging_priorities.length * 2)];
 
         // Iterate through each car and do actions according to state
-        for (Electric_Car electric_car : electric_cars.values()) {
-            switch (electric_car.state.getDescriptor()) {
-                case DRIVING -> electric_car.tick_drive();
-                case BEING_TOWED -> electric_car.tick_be_towed();
-                case CONNECTED_CHARGING, CONNECTED_DISCHARGING, CONNECTED_IDLE -> priority_table.get(electric_car.get_charging_priority()).add(electric_car);
-                default -> { }
-            }
+        if (fleet_state != null) {
+            // The columns are ticked in one pass, priorities are merged in the order of the fleet
+            fleet_state.tick(tick_speed, fleet, charging_priorities);
+            for (int i = 0; i < fleet_size; i++) update_priority(i, fleet[i], charging_priorities[i]);
+        } else if (parallel_ticks) {
+            // The cars are ticked concurrently and merged in the order of the fleet, which equals the serial mode
+            fork_join_pool.invoke(new Fleet_Tick_Task(fleet, charging_priorities, 0, fleet_size));
+            for (int i = 0; i < fleet_size; i++) update_priority(i, fleet[i], charging_priorities[i]);
+        } else {
+            for (int i = 0; i < fleet_size; i++) update_priority(i, fleet[i], Fleet_Tick_Task.tick(fleet[i]));
         }
 
-        // System.out.println(priority_table);
+        distribute_energy();
+    }
 
-        // Discharge if energy is needed else charge
-        ArrayList<Electric_Car> electric_cars = new ArrayList<>();
-        boolean production_deficit = electricity_snapshot.consumption[time.inMinutesWithHoursIsolated()] > electricity_snapshot.production[time.inMinutesWithHoursIsolated()];
+    /**
+     * Calculates the charging priorities of the connected cars only and distributes the energy, without advancing any car.
+     * Used by the event driven mode, which advances driving and towed cars on it's own.
+     * @see #manage_cars()
+     */
+    void manage_connected_cars() {
+        Electric_Car[] fleet = electric_cars.elements();
+        for (int i = priority_buckets.next(0); i >= 0; i = priority_buckets.next(i + 1)) update_priority(i, fleet[i], fleet[i].cached_charging_priority());
+        distribute_energy();
+    }
 
-        if (production_deficit) { // Consumption is higher than the production
-            // System.out.println("Production Deficit");
-            for (var priority : Electric_Car.ChargingPriority.values()) {
-                if (priority_table.get(priority) != null && priority != Electric_Car.ChargingPriority.IMMEDIATELY) {
-                    electric_cars.addAll(priority_table.get(priority));
-                }
-            }
-        } else {
-            // System.out.println("Consumption Deficit");
-            for (var priority : Electric_Car.ChargingPriority.values()) {
-                if (priority_table.get(priority) != null) {
-                    electric_cars.addAll(priority_table.get(priority));
-                }
+    /** Moves a car into the bucket of it's current charging priority, or out of every bucket if it is not connected.
+     * Used when a car is connected or disconnected.
+     * @param electric_car The car
+     */
+    void update_priority(Electric_Car electric_car) {
+        int index = electric_cars.indexOf(electric_car.grid_id);
+        if (index >= 0) update_priority(index, electric_car, electric_car.v2g_unit != null ? electric_car.cached_charging_priority() : null);
+    }
+
+    private void update_priority(int index, Electric_Car electric_car, Electric_Car.ChargingPriority charging_priority) {
+        if (priority_buckets.update(index, charging_priority) && journal != null && charging_priority != null) journal_priority(electric_car, charging_priority);
+        if (charging_priority == null) electric_car.scheduled_day = -1; // A disconnected car leaves the day ahead schedule
+    }
+
+    /**
+     * Charges / discharges the connected cars to stabilize the Grid.
+     * @see Dispatcher
+     */
+    void distribute_energy() {
+        // The energy ratio of the snapshot in % is scaled with the power of the grid to the energy of one tick in kWh
+        // Discharge if energy is needed (the consumption is higher than the production) else charge
+        double balance = electricity_snapshot.getTotal_energy()[time.inMinutesWithHoursIsolated()] * grid_power / 100 / 60 * tick_speed;
+        if (priority_buckets.isEmpty()) {
+            count_deficit(balance, balance);
+            return;
+        }
+        dispatcher.dispatch(balance);
+        count_deficit(balance, balance + dispatcher.getDischarged_energy() - dispatcher.getCharged_energy());
+    }
+
+    /** Counts the deficit of the current tick that is left after the cars were dispatched
+     * @param balance The surplus (positive) or deficit (negative) of the tick in kWh
+     * @param rest The balance after the cars were dispatched in kWh
+     */
+    private void count_deficit(double balance, double rest) {
+        if (balance >= 0 || rest >= 0) return;
+        if (rest < balance * 0.01) deficit_minutes += tick_speed; // Both are negative, a rest below 1% counts as covered
+        uncovered_deficit -= rest;
+    }
+
+    /** Counts the deficit of minutes in which no car was connected, used by the event driven mode which skips them
+     * @param from The first minute of the day (inclusive)
+     * @param to The last minute of the day (exclusive)
+     */
+    void count_undispatched(int from, int to) {
+        if (electricity_snapshot == null) return;
+        int[] total_energy = electricity_snapshot.getTotal_energy();
+        for (int minute = from; minute < to; minute++) {
+            if (total_energy[minute] < 0) {
+                deficit_minutes++;
+                uncovered_deficit -= total_energy[minute] * grid_power / 100 / 60;
             }
-            Collections.reverse(electric_cars); // Reverse to bring higher priority vehicles to the front.
         }
+    }
 
-        // print(priority_table.toString(), Log_Level.INFO);
+    void count_towing_event() {
+        towing_events.increment();
+    }
 
+    /**
+     * @return The minutes in which the cars covered less than 99% of the grid's deficit (or no car was connected)
+     */
+    public long getDeficit_minutes() {
+        return deficit_minutes;
+    }
 
-        // TODO: 4/3/2021 Create a list / hashmap that stores each car and it's charging priority to calculate who gets the energy | Done
-        // TODO: 4/3/2021 Distributed energy must be pulled from the grid (hint: charge method returns used energy)
-        // TODO: 4/3/2021 Pull energy from cars with a low priority based on the current network stability
-        // Creating a dictionary with
+    /**
+     * @return The deficit the cars didn't cover in kWh
+     */
+    public double getUncovered_deficit() {
+        return uncovered_deficit;
+    }
+
+    /**
+     * @return How often a towing service was called
+     */
+    public long getTowing_events() {
+        return towing_events.sum();
+    }
+
+    /** Sets the power of the grid, which scales the energy ratio of the electricity snapshot (in %) to the energy that
+     * is distributed among the connected cars.
+     * @param grid_power The power that equals 100% in kW | e.g. 10000kW
+     * @throws IllegalArgumentException if the power is negative
+     */
+    public void setGrid_power(double grid_power) {
+        if (grid_power < 0) throw new IllegalArgumentException("The grid power needs to be greater or equal to 0.");
+        this.grid_power = grid_power;
+    }
+
+    public double getGrid_power() {
+        return grid_power;
+    }
+
+    public Dispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /** Switches between dispatching the connected cars tick by tick and planning them once per day.
+     * The day ahead scheduler plans the charging and discharging of every connected car for the whole day at midnight, when
+     * it is switched on during a day the rest of the day is planned immediately. Cars that connect later are dispatched tick by tick.
+     * @param day_ahead Whether the cars should be planned once per day
+     * @see Day_Ahead_Scheduler
+     */
+    public void setDay_ahead(boolean day_ahead) {
+        if (day_ahead && day_ahead_scheduler == null) {
+            day_ahead_scheduler = new Day_Ahead_Scheduler(this);
+            if (electricity_snapshot != null) day_ahead_scheduler.plan(electricity_snapshot);
+        } else if (!day_ahead && day_ahead_scheduler != null) {
+            for (Electric_Car electric_car : electric_cars) electric_car.scheduled_day = -1;
+            day_ahead_scheduler = null;
+        }
+    }
+
+    public boolean isDay_ahead() {
+        return day_ahead_scheduler != null;
+    }
 
+    Day_Ahead_Scheduler getDay_ahead_scheduler() {
+        return day_ahead_scheduler;
     }
 
     /**
      * Overload of the inherited print method.
-     * @see Out#print(String, String, String, Log_Level, Log_Level)
+     * @see Out#print(String, String, Log_Level, Log_Level, String, Object...)
      */
-    private void print(String out, Log_Level log_level) {
-        Out.print("Grid", "Master", out, Log_Level.ALL, log_level);
+    private void print(String out, Log_Level log_level, Object... args) {
+        Out.print("Grid", "Master", this.log_level, log_level, out, args);
     }
 
 }
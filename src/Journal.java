@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact binary journal of a simulation run, which replaces text logs for offline analysis.
+ * Every state change of a car, every charged / discharged tick, every new day and every changed charging priority is
+ * appended as a fixed width record to a memory mapped file. Records are appended lock free, so cars that are ticked
+ * concurrently can write at the same time.
+ * <pre>
+ * Record layout (40 bytes, little endian):
+ *  0 type      : byte   | The Type of the record (0 = not written)
+ *  1 code      : byte   | Descriptor, priority or weather, depends on the type
+ *  2 reserved  : short
+ *  4 id        : int    | The id of the car (the grid_id as number) or the day
+ *  8 minute    : long   | The epoch minute of the grid
+ * 16 value_1   : double
+ * 24 value_2   : double
+ * 32 value_3   : double
+ * </pre>
+ * The file starts with a header of the same size (magic, version, record size, seed).
+ * @see Journal_Reader
+ * @see Grid#setJournal(Journal)
+ */
+public class Journal implements AutoCloseable {
+
+    static final int RECORD_SIZE = 40;
+    static final int MAGIC = 0x56324A31; // "V2J1"
+    static final int VERSION = 1;
+    private static final long REGION_SIZE = RECORD_SIZE * (1L << 20); // The file is mapped in regions of 40MB, records never span two regions
+
+    private final Path path;
+    private final FileChannel channel;
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+    private final AtomicLong next_position = new AtomicLong(RECORD_SIZE); // The position of the next record, the header comes first
+    private volatile boolean closed = false;
+
+    /**
+     * The kinds of records. The values of each kind are stored as follows:
+     * REGISTERED: capacity in kWh, energy consumption in kWh/100km, charge status in %
+     * UNREGISTERED: charge status in %
+     * STATE_CHANGE (code = descriptor): charge status in %, remaining route length in km, speed in km/h while driving or else the remaining time penalty
+     * CHARGE / DISCHARGE (code = descriptor): energy taken from / fed into the grid in kWh, charge status in %
+     * SNAPSHOT (id = day, code = cloudiness * 16 + wind speed): production of the day, consumption of the day, total energy of the day
+     * PRIORITY (code = charging priority): charge status in %
+     */
+    enum Type {
+        REGISTERED, UNREGISTERED, STATE_CHANGE, CHARGE, DISCHARGE, SNAPSHOT, PRIORITY;
+
+        static final Type[] BY_CODE = values();
+
+        byte code() {
+            return (byte) (ordinal() + 1);
+        }
+    }
+
+    /** Creates a new journal, a existing file is overwritten
+     * @param path The path of the journal file | e.g. Path.of("run.v2gj")
+     * @param seed The seed of the simulation, stored in the header
+     * @throws IOException if the file can't be created
+     */
+    public Journal(Path path, long seed) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer header = region(0);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, RECORD_SIZE);
+        header.putLong(16, seed);
+    }
+
+    /** Appends a record
+     * @param type The type of the record
+     * @param code The descriptor, priority or weather of the record
+     * @param id The id of the car or the day
+     * @param minute The epoch minute of the grid
+     */
+    void append(Type type, int code, int id, long minute, double value_1, double value_2, double value_3) {
+        if (closed) throw new IllegalStateException("The journal was already closed.");
+        long position = next_position.getAndAdd(RECORD_SIZE);
+        MappedByteBuffer region = region((int) (position / REGION_SIZE));
+        int offset = (int) (position % REGION_SIZE);
+        // The type is written last, the reader treats records without a type as not written
+        region.put(offset + 1, (byte) code);
+        region.putInt(offset + 4, id);
+        region.putLong(offset + 8, minute);
+        region.putDouble(offset + 16, value_1);
+        region.putDouble(offset + 24, value_2);
+        region.putDouble(offset + 32, value_3);
+        region.put(offset, type.code());
+    }
+
+    /** Appends the current state of a car
+     * @param electric_car The car
+     * @param minute The epoch minute of the grid
+     */
+    void state_change(Electric_Car electric_car, long minute) {
+        Electric_Car.State state = electric_car.state;
+        Electric_Car.State.Descriptor descriptor = state.getDescriptor();
+        double value_3 = descriptor == Electric_Car.State.Descriptor.DRIVING ? electric_car.getSpeed() : state.getRemaining_time_penalty();
+        append(Type.STATE_CHANGE, descriptor.ordinal(), id(electric_car), minute, electric_car.getCharge_status(), state.getRemaining_route_length(), value_3);
+    }
+
+    /** Appends the energy that was charged or discharged by a car during one tick
+     * @param type CHARGE or DISCHARGE
+     * @param electric_car The car
+     * @param energy The energy taken from / fed into the grid in kWh
+     * @param minute The epoch minute of the grid
+     */
+    void energy(Type type, Electric_Car electric_car, double energy, long minute) {
+        append(type, electric_car.state.getDescriptor().ordinal(), id(electric_car), minute, energy, electric_car.getCharge_status(), 0.0);
+    }
+
+    /**
+     * @return The id of the car as number
+     */
+    static int id(Electric_Car electric_car) {
+        return Integer.parseUnsignedInt(electric_car.grid_id, 16);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return How many records were appended
+     */
+    public long size() {
+        return next_position.get() / RECORD_SIZE - 1;
+    }
+
+    /** Returns the mapped region, regions are mapped upon first use
+     * @param index The index of the region
+     * @return The region
+     */
+    private MappedByteBuffer region(int index) {
+        MappedByteBuffer[] regions = this.regions;
+        if (index < regions.length && regions[index] != null) return regions[index];
+        synchronized (this) {
+            // Copy on write, threads that append without the lock only ever see fully initialized regions
+            regions = Arrays.copyOf(this.regions, Math.max(index + 1, this.regions.length));
+            if (regions[index] == null) {
+                try {
+                    MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_WRITE, index * REGION_SIZE, REGION_SIZE);
+                    region.order(ByteOrder.LITTLE_ENDIAN);
+                    regions[index] = region;
+                } catch (IOException e) {
+                    throw new IllegalStateException("The journal could not be extended.", e);
+                }
+            }
+            this.regions = regions;
+            return regions[index];
+        }
+    }
+
+    /** Writes the mapped regions to the disk
+     * @throws IOException if the file can't be written
+     */
+    public void force() throws IOException {
+        for (MappedByteBuffer region : regions) {
+            if (region != null) region.force();
+        }
+    }
+
+    /** Writes the journal to the disk and cuts the file after the last record
+     * @throws IOException if the file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        force();
+        regions = new MappedByteBuffer[0];
+        try {
+            channel.truncate(next_position.get());
+        } catch (IOException e) {
+            // Some platforms can't truncate mapped files, the reader stops at the first unwritten record instead
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a journal and reconstructs the state of the fleet at any minute without simulating it again.
+ * When the journal is opened it is replayed once and the state of the fleet is kept at the start of every day (at each
+ * SNAPSHOT record), so a query only replays the records since the nearest earlier keyframe instead of the whole journal.
+ * @see Journal
+ */
+public class Journal_Reader implements AutoCloseable {
+
+    private static final long REGION_SIZE = Journal.RECORD_SIZE * (1L << 20);
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final long seed;
+    private final long size; // The number of written records
+    private final List<Keyframe> keyframes = new ArrayList<>(); // The state of the fleet at the start of every day, in the order of the records
+
+    /** Opens a journal file
+     * @param path The path of the journal file
+     * @throws IOException if the file can't be read or is not a journal
+     */
+    public Journal_Reader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long length = channel.size();
+        regions = new MappedByteBuffer[(int) ((length + REGION_SIZE - 1) / REGION_SIZE)];
+        for (int i = 0; i < regions.length; i++) {
+            regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, i * REGION_SIZE, Math.min(REGION_SIZE, length - i * REGION_SIZE));
+            regions[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        if (regions.length == 0 || length < Journal.RECORD_SIZE || regions[0].getInt(0) != Journal.MAGIC) throw new IOException(String.format("%s is not a journal.", path));
+        if (regions[0].getInt(4) != Journal.VERSION || regions[0].getInt(8) != Journal.RECORD_SIZE) throw new IOException(String.format("%s has a unsupported journal version.", path));
+        seed = regions[0].getLong(16);
+
+        // The file may end with unwritten records if it was not closed properly
+        long records = length / Journal.RECORD_SIZE - 1;
+        while (records > 0 && type_code(records - 1) == 0) records--;
+        size = records;
+
+        LinkedHashMap<Integer, Car_Replay> fleet = new LinkedHashMap<>();
+        long from = 0;
+        for (long i = 0; i < size; i++) {
+            if (type_code(i) != Journal.Type.SNAPSHOT.code()) continue;
+            replay(fleet, from, i);
+            keyframes.add(new Keyframe(i, copy(fleet)));
+            from = i;
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return How many records the journal contains
+     */
+    public long size() {
+        return size;
+    }
+
+    /** Reads a record
+     * @param index The index of the record | e.g. 0
+     * @return The record
+     */
+    public Record get(long index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.format("Record %s does not exist, the journal contains %s records.", index, size));
+        long position = (index + 1) * Journal.RECORD_SIZE;
+        MappedByteBuffer region = regions[(int) (position / REGION_SIZE)];
+        int offset = (int) (position % REGION_SIZE);
+        byte type = region.get(offset);
+        return new Record(type == 0 ? null : Journal.Type.BY_CODE[type - 1], region.get(offset + 1), region.getInt(offset + 4), region.getLong(offset + 8),
+                region.getDouble(offset + 16), region.getDouble(offset + 24), region.getDouble(offset + 32));
+    }
+
+    private byte type_code(long index) {
+        long position = (index + 1) * Journal.RECORD_SIZE;
+        return regions[(int) (position / REGION_SIZE)].get((int) (position % REGION_SIZE));
+    }
+
+    private long minute(long index) {
+        long position = (index + 1) * Journal.RECORD_SIZE;
+        return regions[(int) (position / REGION_SIZE)].getLong((int) (position % REGION_SIZE) + 8);
+    }
+
+    /** Finds the first record after the specified minute. Records are appended in the order of the grid time.
+     * @param epoch_minute The epoch minute
+     * @return The index of the first record with a later minute, size() if there is none
+     */
+    private long end_of_minute(long epoch_minute) {
+        long low = 0, high = size;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (minute(middle) <= epoch_minute) low = middle + 1;
+            else high = middle;
+        }
+        return low;
+    }
+
+    /** Reconstructs the state of every car that was registered at the end of the specified minute (after it's tick).
+     * The charge status and route of driving and towed cars is extrapolated from the start of their route (per minute).
+     * @param epoch_minute The epoch minute | e.g. Clock.of(3, 14, 30)
+     * @return The state of each car by it's id, in the order of registration
+     */
+    public Map<String, Car_Record> getFleet(long epoch_minute) {
+        long end = end_of_minute(epoch_minute);
+        Keyframe keyframe = keyframe(end);
+        LinkedHashMap<Integer, Car_Replay> fleet = keyframe != null ? copy(keyframe.fleet) : new LinkedHashMap<>();
+        replay(fleet, keyframe != null ? keyframe.index : 0, end);
+
+        LinkedHashMap<String, Car_Record> result = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Car_Replay> entry : fleet.entrySet()) {
+            String id = String.format("%08x", entry.getKey());
+            result.put(id, entry.getValue().toRecord(id, epoch_minute));
+        }
+        return result;
+    }
+
+    /** Finds the last keyframe that doesn't contain any record from the specified index onwards
+     * @param end The index of the first record that must not be contained
+     * @return The keyframe, null if there is none
+     */
+    private Keyframe keyframe(long end) {
+        int low = 0, high = keyframes.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keyframes.get(middle).index <= end) low = middle + 1;
+            else high = middle;
+        }
+        return low > 0 ? keyframes.get(low - 1) : null;
+    }
+
+    /** Applies the records of a range to the state of a fleet
+     * @param fleet The state of each car by it's id, in the order of registration
+     * @param from The index of the first record
+     * @param to The index after the last record
+     */
+    private void replay(LinkedHashMap<Integer, Car_Replay> fleet, long from, long to) {
+        for (long i = from; i < to; i++) {
+            Record record = get(i);
+            if (record.type == null) continue;
+            switch (record.type) {
+                case REGISTERED -> fleet.put(record.id, new Car_Replay(record));
+                case UNREGISTERED -> fleet.remove(record.id);
+                case STATE_CHANGE, CHARGE, DISCHARGE, PRIORITY -> {
+                    Car_Replay car = fleet.get(record.id);
+                    if (car != null) car.apply(record);
+                }
+                case SNAPSHOT -> { }
+            }
+        }
+    }
+
+    private static LinkedHashMap<Integer, Car_Replay> copy(LinkedHashMap<Integer, Car_Replay> fleet) {
+        LinkedHashMap<Integer, Car_Replay> copy = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Car_Replay> entry : fleet.entrySet()) copy.put(entry.getKey(), new Car_Replay(entry.getValue()));
+        return copy;
+    }
+
+    /**
+     * @return The snapshot record of every day in the journal
+     */
+    public List<Record> getDays() {
+        ArrayList<Record> days = new ArrayList<>();
+        for (long i = 0; i < size; i++) {
+            if (type_code(i) == Journal.Type.SNAPSHOT.code()) days.add(get(i));
+        }
+        return days;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A record of the journal.
+     * @see Journal
+     */
+    public record Record(Journal.Type type, int code, int id, long minute, double value_1, double value_2, double value_3) { }
+
+    /**
+     * The reconstructed state of a car.
+     * @param descriptor The state descriptor | e.g. DRIVING
+     * @param charge_status The charge status in %
+     * @param remaining_route_length The remaining route length in km, -1 if the car has no route
+     * @param charging_priority The last charging priority, null if it was never connected
+     * @param charged_energy The energy the car was charged with so far in kWh
+     * @param discharged_energy The energy the car fed into the grid so far in kWh
+     */
+    public record Car_Record(String id, Electric_Car.State.Descriptor descriptor, double charge_status, double remaining_route_length,
+                             Electric_Car.ChargingPriority charging_priority, double charged_energy, double discharged_energy) { }
+
+    /**
+     * The state of the fleet before a record.
+     * @param index The index of the record, every earlier record is applied
+     * @param fleet The state of each car by it's id, in the order of registration
+     */
+    private record Keyframe(long index, LinkedHashMap<Integer, Car_Replay> fleet) { }
+
+    /**
+     * The state of a car while the journal is replayed.
+     */
+    private static class Car_Replay {
+        private final double capacity;
+        private final double energy_consumption;
+        private Electric_Car.State.Descriptor descriptor = Electric_Car.State.Descriptor.IDLE;
+        private double charge_status;
+        private double remaining_route_length = -1;
+        private double speed = 0; // The speed of the current route
+        private double remaining_time_penalty = -1; // The time until the towing vehicle arrives
+        private long since; // The minute of the last state change
+        private Electric_Car.ChargingPriority charging_priority;
+        private double charged_energy = 0, discharged_energy = 0;
+
+        Car_Replay(Record registered) {
+            capacity = registered.value_1;
+            energy_consumption = registered.value_2;
+            charge_status = registered.value_3;
+            since = registered.minute;
+        }
+
+        Car_Replay(Car_Replay other) {
+            capacity = other.capacity;
+            energy_consumption = other.energy_consumption;
+            descriptor = other.descriptor;
+            charge_status = other.charge_status;
+            remaining_route_length = other.remaining_route_length;
+            speed = other.speed;
+            remaining_time_penalty = other.remaining_time_penalty;
+            since = other.since;
+            charging_priority = other.charging_priority;
+            charged_energy = other.charged_energy;
+            discharged_energy = other.discharged_energy;
+        }
+
+        void apply(Record record) {
+            switch (record.type) {
+                case STATE_CHANGE -> {
+                    descriptor = Electric_Car.State.Descriptor.BY_ORDINAL[record.code];
+                    charge_status = record.value_1;
+                    remaining_route_length = record.value_2;
+                    speed = descriptor == Electric_Car.State.Descriptor.DRIVING ? record.value_3 : 0;
+                    remaining_time_penalty = descriptor == Electric_Car.State.Descriptor.BEING_TOWED ? record.value_3 : -1;
+                    since = record.minute;
+                }
+                case CHARGE, DISCHARGE -> {
+                    descriptor = Electric_Car.State.Descriptor.BY_ORDINAL[record.code];
+                    charge_status = record.value_2;
+                    if (record.type == Journal.Type.CHARGE) charged_energy += record.value_1;
+                    else discharged_energy += record.value_1;
+                }
+                case PRIORITY -> charging_priority = Electric_Car.ChargingPriority.values()[record.code];
+                default -> { }
+            }
+        }
+
+        Car_Record toRecord(String id, long epoch_minute) {
+            double charge_status = this.charge_status, remaining_route_length = this.remaining_route_length;
+            if (descriptor == Electric_Car.State.Descriptor.DRIVING) {
+                // The route started before the tick of the minute of the state change
+                double traveled_distance = Math.min(remaining_route_length, speed / 60 * (epoch_minute - since + 1));
+                remaining_route_length -= traveled_distance;
+                charge_status = Math.max(charge_status - traveled_distance * (energy_consumption / 100) / capacity * 100, 0.0);
+            } else if (descriptor == Electric_Car.State.Descriptor.BEING_TOWED) {
+                // The towing vehicle arrives first and then drives with 70 km/h, the same steps as Electric_Car#tick_be_towed()
+                double remaining_time_penalty = this.remaining_time_penalty;
+                for (long minute = since + 1; minute <= epoch_minute; minute++) { // The towing service was called during the tick of the state change
+                    if (remaining_time_penalty > 0) remaining_time_penalty = remaining_time_penalty - 1 <= 0 ? -1 : remaining_time_penalty - 1;
+                    else if (remaining_route_length - 70.0 / 60 > 0) remaining_route_length = remaining_route_length - 70.0 / 60;
+                }
+            }
+            return new Car_Record(id, descriptor, charge_status, remaining_route_length, charging_priority, charged_energy, discharged_energy);
+        }
+    }
+}
@@ -1,7 +1,5 @@
 import Services.Out;
 
-import java.util.Random;
-
 /**
  * Derivative class of Electric_Car.java to provide predefined car models.
  */
@@ -9,7 +7,7 @@ public class Models {
 
     public static Electric_Car Random (String owner, String license_plate, Grid grid, Out.Log_Level log_level) {
         // Generate a random index between 0 and 2
-        int index = new Random().nextInt(3);
+        int index = grid.model_random.nextInt(3);
         Electric_Car random_model = switch (index) {
             case 0 -> Tesla_Model_S(owner, license_plate, grid, log_level);
             case 1 -> VW_eUp(owner, license_plate, grid, log_level);
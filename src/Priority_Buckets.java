@@ -0,0 +1,96 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+
+/**
+ * The connected cars of a grid grouped by their charging priority.
+ * Each priority keeps a index set over the registry indices of it's cars, which persists between ticks. A car only moves
+ * to another set when it's priority changes, and iterating a set yields the cars in the order of the fleet no matter in
+ * which order they were moved (which keeps every operating mode equal).
+ * @see Grid#manage_cars()
+ */
+public class Priority_Buckets {
+
+    private final EnumMap<Electric_Car.ChargingPriority, BitSet> buckets = new EnumMap<>(Electric_Car.ChargingPriority.class);
+    private final BitSet connected = new BitSet(); // The union of all buckets
+    private Electric_Car.ChargingPriority[] priorities = new Electric_Car.ChargingPriority[16]; // The priority of each registry index, null if in no bucket
+
+    Priority_Buckets() {
+        for (Electric_Car.ChargingPriority charging_priority : Electric_Car.ChargingPriority.values()) buckets.put(charging_priority, new BitSet());
+    }
+
+    /** Moves the car with the specified registry index into the bucket of it's priority
+     * @param index The registry index of the car
+     * @param charging_priority The new priority, null to remove the car from every bucket (e.g. when disconnected)
+     * @return changed : boolean | Whether the car moved to another bucket
+     */
+    boolean update(int index, Electric_Car.ChargingPriority charging_priority) {
+        if (index >= priorities.length) {
+            if (charging_priority == null) return false;
+            priorities = Arrays.copyOf(priorities, Math.max(priorities.length * 2, index + 1));
+        }
+        Electric_Car.ChargingPriority previous = priorities[index];
+        if (previous == charging_priority) return false;
+
+        if (previous != null) buckets.get(previous).clear(index);
+        if (charging_priority != null) buckets.get(charging_priority).set(index);
+        connected.set(index, charging_priority != null);
+        priorities[index] = charging_priority;
+        return true;
+    }
+
+    /** Moves the entry of a registry index to another index, mirrors the swap in Registry#remove
+     * @param from The old registry index (the last one) | e.g. 41
+     * @param to The new registry index, which must not be in a bucket | e.g. 7
+     */
+    void move(int from, int to) {
+        Electric_Car.ChargingPriority charging_priority = get(from);
+        if (charging_priority == null) return;
+        update(from, null);
+        update(to, charging_priority);
+    }
+
+    /**
+     * @param index The registry index of the car
+     * @return The priority the car is stored with, null if it is in no bucket
+     */
+    Electric_Car.ChargingPriority get(int index) {
+        return index < priorities.length ? priorities[index] : null;
+    }
+
+    /**
+     * @param charging_priority The priority
+     * @return How many cars currently have the priority
+     */
+    public int size(Electric_Car.ChargingPriority charging_priority) {
+        return buckets.get(charging_priority).cardinality();
+    }
+
+    /**
+     * @param charging_priority The priority
+     * @param index The registry index the search starts at (inclusive)
+     * @return The registry index of the next car with the priority, -1 if there is none
+     */
+    int next(Electric_Car.ChargingPriority charging_priority, int index) {
+        return buckets.get(charging_priority).nextSetBit(index);
+    }
+
+    /**
+     * @param index The registry index the search starts at (inclusive)
+     * @return The registry index of the next car in any bucket (the next connected car), -1 if there is none
+     */
+    int next(int index) {
+        return connected.nextSetBit(index);
+    }
+
+    /**
+     * @return How many cars are in any bucket
+     */
+    public int size() {
+        return connected.cardinality();
+    }
+
+    public boolean isEmpty() {
+        return connected.isEmpty();
+    }
+}
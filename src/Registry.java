@@ -0,0 +1,135 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.IntFunction;
+
+/**
+ * Dense storage for the registered objects of a grid (electric cars or v2g units).
+ * Each object gets a int index that addresses a contiguous array, the string ID is kept as a secondary lookup.
+ * Removal swaps the last object into the freed slot, which keeps the array dense but changes the index of the swapped object.
+ * @param <T> The type of the registered objects
+ * @see Grid
+ */
+public class Registry<T> implements Iterable<T> {
+
+    private T[] elements; // The registered objects, dense up to size
+    private String[] ids; // The ID of each registered object, same order as elements
+    private final HashMap<String, Integer> indices = new HashMap<>(); // Maps each ID to it's index
+    private int size = 0;
+
+    /**
+     * @param array_factory Creates the backing array | e.g. Electric_Car[]::new
+     */
+    Registry(IntFunction<T[]> array_factory) {
+        elements = array_factory.apply(16);
+        ids = new String[16];
+    }
+
+    /** Adds a object with the specified ID
+     * @param id The unique ID of the object
+     * @param element The object that should be registered
+     * @return index : int | The dense index of the object
+     * @throws IllegalArgumentException if the ID is already in use
+     */
+    int add(String id, T element) {
+        if (indices.containsKey(id)) throw new IllegalArgumentException(String.format("ID %s is already registered.", id));
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        elements[size] = element;
+        ids[size] = id;
+        indices.put(id, size);
+        return size++;
+    }
+
+    /** Removes the object with the specified ID by swapping the last object into it's slot
+     * @param id The ID of the object
+     * @return The removed object, null if no object is registered with the ID
+     */
+    T remove(String id) {
+        Integer index = indices.remove(id);
+        if (index == null) return null;
+
+        T removed = elements[index];
+        int last = --size;
+        if (index != last) { // Swap the last object into the freed slot
+            elements[index] = elements[last];
+            ids[index] = ids[last];
+            indices.put(ids[index], index);
+        }
+        elements[last] = null;
+        ids[last] = null;
+        return removed;
+    }
+
+    /**
+     * @param id The ID of the object
+     * @return The object, null if no object is registered with the ID
+     */
+    public T get(String id) {
+        Integer index = indices.get(id);
+        return index == null ? null : elements[index];
+    }
+
+    /**
+     * @param index The dense index of the object | 0 <= index < size()
+     * @return The object
+     */
+    public T get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.format("Index %s is out of bounds for size %s.", index, size));
+        return elements[index];
+    }
+
+    /**
+     * @param id The ID of the object
+     * @return The dense index of the object, -1 if no object is registered with the ID
+     */
+    public int indexOf(String id) {
+        Integer index = indices.get(id);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index The dense index of the object
+     * @return The ID of the object
+     */
+    public String getId(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(String.format("Index %s is out of bounds for size %s.", index, size));
+        return ids[index];
+    }
+
+    public boolean contains(String id) {
+        return indices.containsKey(id);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Returns the backing array for hot loops. Only the first size() entries are valid and the array must not be modified.
+     * @return The backing array
+     */
+    T[] elements() {
+        return elements;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public T next() {
+                if (index >= size) throw new NoSuchElementException();
+                return elements[index++];
+            }
+        };
+    }
+}
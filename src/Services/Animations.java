@@ -9,6 +9,9 @@ import java.util.Random;
 public class Animations {
 
     static Bitmap bitmap = new Bitmap(256, 256, "Car_Animations.ppm", false);
+    static {
+        bitmap.setIncremental(true); // Each frame only overwrites the pixels that changed since the last one
+    }
 
     static Bitmap.Colors colors = bitmap.new Colors();
     static Bitmap.Pattern backgroundColor = colors.merge(colors.grey(), colors.white(), "gradientH=auto");
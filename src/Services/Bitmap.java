@@ -1,9 +1,13 @@
 package Services;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -30,7 +34,19 @@ public class Bitmap {
     public ArrayList<String> comments = new ArrayList<>();
 
     private String filename; // The filename that is used in the render method
-    private int[][][] canvas; // A three dimensional representation of the array columns[rows[pixel[]]]
+    private int[] pixels; // The packed RGB values (0xRRGGBB) of every pixel, row by row from the top left
+    private boolean binary = true; // Whether render() writes the binary formats, which are about 4 times smaller than plain text
+    private ByteBuffer render_buffer; // The buffer the rows are encoded into before they are written, reused between renders
+
+    // Incremental rendering, the state of the file that was rendered last (null if there is none)
+    private boolean incremental = false; // Whether render() only overwrites the changed pixels of the file it rendered last
+    private int[] changed_from, changed_to; // The changed columns of each row since the last render (inclusive), from > to if unchanged
+    private int[] rendered_pixels; // The pixels as they are in the file
+    private Path rendered_path;
+    private String rendered_header;
+    private long rendered_size; // The size of the file in bytes
+    private Object rendered_key; // The key of the file, null if the file system has none
+    private FileTime rendered_time; // When the file was written last
 
     /** Creates a new Bitmap object
      * d = default (can be left away)
@@ -42,7 +58,7 @@ public class Bitmap {
     public Bitmap(int canvas_width, int canvas_height, String filename, boolean render_on_init) {
         this.canvas_width = canvas_width;
         this.canvas_height = canvas_height;
-        canvas = new int[canvas_height][canvas_width][3];
+        pixels = new int[canvas_width * canvas_height];
         this.filename = filename;
         this.comments.add("#" + filename);
         if (render_on_init) render(true);
@@ -55,10 +71,75 @@ public class Bitmap {
     /**@see #Bitmap(int, int, String, boolean) **/
     public Bitmap(int canvas_width, int canvas_height, boolean render_on_init) { this(canvas_width, canvas_height, "Bitmap.ppm", render_on_init); }
 
+    /** Returns a copy of the pixels as a three dimensional array columns[rows[pixel[]]], built anew on every call.
+     * The copy is read-only: the pixels are stored packed, so changing the array doesn't change the bitmap or it's
+     * rendered file (use changePixel() or render(int[][][]) instead).
+     * @return A copy of the pixels of the canvas
+     */
     public int[][][] getCanvas() {
+        int[][][] canvas = new int[canvas_height][canvas_width][];
+        for (int row = 0; row < canvas_height; row++) {
+            for (int column = 0; column < canvas_width; column++) {
+                canvas[row][column] = unpack(pixels[row * canvas_width + column]);
+            }
+        }
         return canvas;
     }
 
+    /** Replaces the pixels of the canvas
+     * @param content A three dimensional array columns[rows[pixel[]]] with the size of the canvas
+     */
+    private void setCanvas(int[][][] content) {
+        pixels = new int[canvas_width * canvas_height];
+        for (int row = 0; row < canvas_height; row++) {
+            System.arraycopy(packRow(content[row]), 0, pixels, row * canvas_width, canvas_width);
+        }
+        forgetRender(); // The size of the canvas might have changed
+    }
+
+    /** Marks columns of a row as changed since the last render, only tracked while the rendered file is known
+     * @param row The row, counted from the top starting at 0
+     * @param from The first changed column, starting at 0
+     * @param to The last changed column (inclusive)
+     */
+    private void markChanged(int row, int from, int to) {
+        if (changed_from == null) return;
+        if (from < changed_from[row]) changed_from[row] = from;
+        if (to > changed_to[row]) changed_to[row] = to;
+    }
+
+    /**
+     * @return The packed RGB value (0xRRGGBB) of a pixel array {r, g, b}
+     */
+    private static int pack(int[] pixel) {
+        return (pixel[0] & 0xFF) << 16 | (pixel[1] & 0xFF) << 8 | pixel[2] & 0xFF;
+    }
+
+    /**
+     * @return The pixel array {r, g, b} of a packed RGB value
+     */
+    private static int[] unpack(int rgb) {
+        return new int[]{rgb >>> 16, rgb >>> 8 & 0xFF, rgb & 0xFF};
+    }
+
+    /**
+     * @return The packed RGB values of a row of pixel arrays
+     */
+    private static int[] packRow(int[][] row) {
+        int[] packed = new int[row.length];
+        for (int i = 0; i < row.length; i++) {
+            packed[i] = pack(row[i]);
+        }
+        return packed;
+    }
+
+    /**
+     * @return The pixel array of a pixel (counted from the top left, starting at 0)
+     */
+    private int[] pixel(int row, int column) {
+        return unpack(pixels[row * canvas_width + column]);
+    }
+
     /** Validates the syntax of a color_provider
      * @param color The color_provider that should be validated
      * @throws IllegalArgumentException when the color_provider doesn't match criteria
@@ -91,14 +172,41 @@ public class Bitmap {
         }
 
         if (color_provider.getClass() == Color.class) {
-            canvas[canvas_height-y][x-1] = ((Color) color_provider).color;
+            pixels[(canvas_height-y) * canvas_width + x-1] = ((Color) color_provider).rgb();
+            markChanged(canvas_height-y, x-1, x-1);
         } else if (color_provider.getClass() == Pattern.class) {
-            canvas[canvas_height-y][x-1] = ((Pattern) color_provider).run(x, y).color;
+            pixels[(canvas_height-y) * canvas_width + x-1] = ((Pattern) color_provider).run(x, y).rgb();
+            markChanged(canvas_height-y, x-1, x-1);
         } else {
             throw new IllegalArgumentException("How did you even get here? color_provider can be only be a Pattern or a Color");
         }
     }
 
+    /** Fills the pixels from_x to to_x of a row with a compiled pattern. The span is clipped to the canvas once, pixels
+     * outside of it are skipped, or raise the same exception as changePixel() would raise for the first of them.
+     * @param y The y-coordinate of the row
+     * @param from_x The first x-coordinate (inclusive)
+     * @param to_x The last x-coordinate (inclusive)
+     * @param compiled_pattern The compiled color provider
+     * @param borderclip Whether the PixelOutOfBoundsException should be thrown
+     * @throws Exceptions.PixelOutOfBoundsException if borderclip is set and the span isn't inside the canvas
+     */
+    private void fillSpan(int y, int from_x, int to_x, CompiledPattern compiled_pattern, boolean borderclip) {
+        if (from_x > to_x) return;
+        boolean inside = y >= 1 && y <= canvas_height;
+        if (borderclip) {
+            if (from_x < 1 || from_x > canvas_width) throw new Exceptions.PixelOutOfBoundsException("x is out of bounds");
+            if (!inside) throw new Exceptions.PixelOutOfBoundsException("y is out of bounds");
+        }
+
+        int clipped_from = Math.max(from_x, 1), clipped_to = Math.min(to_x, canvas_width);
+        if (inside && clipped_from <= clipped_to) {
+            compiled_pattern.row(pixels, (canvas_height-y) * canvas_width + clipped_from-1, clipped_from, clipped_to - clipped_from + 1, y);
+            markChanged(canvas_height-y, clipped_from-1, clipped_to-1);
+        }
+        // The pixels up to the border were filled before
+        if (borderclip && to_x > canvas_width) throw new Exceptions.PixelOutOfBoundsException("x is out of bounds");
+    }
 
     /** Validate if the type of the object is correct # Deprecate (was replaced by introducing abstract class ColorProvider)
      * @param obj ColorProvider to validate. Must be either Color or Pattern.
@@ -134,14 +242,10 @@ public class Bitmap {
             border(min_x, min_y, max_x, max_y, outline.thickness, outline.color_provider);
         }
 
+        // The area is filled row by row, clipped to the canvas
+        CompiledPattern compiled_pattern = compile(color_provider); // Compiled once for every pixel of the area
         for (int y = min_y; y <= max_y; y++) {
-            for (int x = min_x; x <= max_x; x++) {
-                try {
-                    changePixel(x, y, color_provider);
-                } catch (Exceptions.PixelOutOfBoundsException exception) {
-                    if (borderclip) {throw exception;}
-                }
-            }
+            fillSpan(y, min_x, max_x, compiled_pattern, borderclip);
         }
     }
 
@@ -205,9 +309,8 @@ public class Bitmap {
     public void fillWin(ColorProvider color_provider) {
         if (color_provider.getClass() == Color.class) {
             validateColor((Color) color_provider);
-            for (int[][] row : canvas) {
-                Arrays.fill(row, ((Color) color_provider).color);
-            }
+            Arrays.fill(pixels, ((Color) color_provider).rgb());
+            for (int row = 0; row < canvas_height; row++) markChanged(row, 0, canvas_width-1);
         } else if (color_provider.getClass() == Pattern.class) {
             fillArea(1, 1, canvas_width, canvas_height, color_provider);
         } else {
@@ -260,12 +363,16 @@ public class Bitmap {
         }
     }
 
-    /** Writes the bitmap to a file
+    /** Writes the bitmap to a file. The rows are encoded one after another into a reusable buffer and streamed to the
+     * file, so the content of the file is never built in memory as a whole. In incremental mode only the changed pixels
+     * are overwritten, if the file was rendered last.
      *  d = default
      * @param filename The name of the file to which the bitmap should be written | d = Bitmap.ppm
-     * @param custom_win A three dimensional array containing custom pixel information | d = canvas
+     * @param custom_win A three dimensional array containing custom pixel information, null for the canvas | d = canvas
      * @param report_path | d false
-     * @throws IllegalArgumentException if the specified file is not in the ppm format, or if the write operation wasn't successful
+     * @throws IllegalArgumentException if the specified file is not in the ppm, pgm or pbm format, or if the write operation wasn't successful
+     * @see #setBinary(boolean)
+     * @see #setIncremental(boolean)
      */
     public void render(String filename, int[][][] custom_win, boolean report_path) {
         String format;
@@ -277,89 +384,57 @@ public class Bitmap {
             full_filepath = System.getProperty("user.dir") + "/" + filename + ".ppm";
         }
 
-        try {
-            // Creating a new File object
-            File bitmap = new File(full_filepath);
-
-            // Checking if the file exists
-            if (!bitmap.exists()) {
-                // Creating a new file
-                if (bitmap.createNewFile()) {
-                    System.out.println("created new file");
-                }
-            }
-            // Creating a new file writer
-            FileWriter render_obj = new FileWriter(full_filepath);
-            // Better way to do build a string in a for loop
-            StringBuilder converted_win = new StringBuilder();
-
-
-
-            // Checking whether the file in the right format
-            switch (format) {
-                case "ppm" -> {
-                    // Adding the header
-                    converted_win.append(String.format("P3\n%s\n%s %s\n255\n", String.join("\n#", this.comments), canvas_width, canvas_height));
-
-                    // Building the file content
-                    for (int[][] row : custom_win) {
-                        for (int[] pixel : row) {
-                            for (int color_information : pixel) {
-                                converted_win.append(color_information).append(" ");
-                            }
-                        }
-                        converted_win.append("\n");
-                    }
-                }
-                case "pbm" -> {
-                    // Adding the header
-                    converted_win.append(String.format("P1\n#%s\n%s %s\n", filename, canvas_width, canvas_height));
-
-                    // Building the file content
-                    for (int[][] row : custom_win) {
-                        for (int[] pixel : row) {
-                            int sum = 0;
-                            for (int color_information : pixel) {
-                                sum += color_information;
-                            }
-                            converted_win.append(sum > 255 * 3 / 2 ? 0 : 1).append(" ");
-                        }
-                        converted_win.append("\n");
-                    }
-                }
-                case "pgm" -> {
-                    // Adding the header
-                    converted_win.append(String.format("P2\n#%s\n%s %s\n256\n", filename, canvas_width, canvas_height));
-
-                    // Building the file content
-                    for (int[][] row : custom_win) {
-                        for (int[] pixel : row) {
-                            int sum = 0;
-                            for (int color_information : pixel) {
-                                sum += color_information;
-                            }
-                            converted_win.append(sum / 3).append(" ");
-                        }
-                        converted_win.append("\n");
-                    }
-                }
-                default -> {
-                    render_obj.close();
-                    throw new IllegalArgumentException(String.format("file format \"%s\" is not supported", format));
-                }
-            }
-
-
+        // Checking whether the file in the right format and building the header
+        String header = switch (format) {
+            case "ppm" -> String.format("%s\n%s\n%s %s\n255\n", binary ? "P6" : "P3", String.join("\n#", this.comments), canvas_width, canvas_height);
+            case "pgm" -> String.format("%s\n#%s\n%s %s\n%s\n", binary ? "P5" : "P2", filename, canvas_width, canvas_height, binary ? 255 : 256);
+            case "pbm" -> String.format("%s\n#%s\n%s %s\n", binary ? "P4" : "P1", filename, canvas_width, canvas_height);
+            default -> throw new IllegalArgumentException(String.format("file format \"%s\" is not supported", format));
+        };
 
+        Path bitmap = Path.of(full_filepath);
+        if (incremental && binary && custom_win == null && renderChanges(bitmap, format, header)) {
+            return;
+        }
+        if (bitmap.equals(rendered_path)) forgetRender(); // The file is overwritten completely
+        if (!Files.exists(bitmap)) {
+            System.out.println("created new file");
+        }
+        try (FileChannel channel = FileChannel.open(bitmap, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
             if (report_path) { // Output the full filepath
                 System.out.println("Writing object to: " + full_filepath);
             }
-            // Write the build string to the file
-            render_obj.write(converted_win.toString());
-            // Close the file
-            render_obj.close();
+            byte[] header_bytes = header.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = renderBuffer(header_bytes.length);
+            buffer.put(header_bytes);
+
+            int rows = custom_win != null ? custom_win.length : canvas_height;
+            for (int row = 0; row < rows; row++) {
+                int[] row_pixels = pixels; // The packed pixels of the row
+                int offset = row * canvas_width, width = canvas_width;
+                if (custom_win != null) {
+                    width = custom_win[row].length;
+                    row_pixels = packRow(custom_win[row]);
+                    offset = 0;
+                }
+                // The most bytes a row can take, plain text values have up to 3 digits and a space
+                int row_bytes = switch (format) {
+                    case "ppm" -> binary ? width * 3 : width * 3 * 4 + 1;
+                    case "pgm" -> binary ? width : width * 4 + 1;
+                    default -> binary ? (width + 7) / 8 : width * 2 + 1;
+                };
+                if (buffer.remaining() < row_bytes) {
+                    writeFully(channel, buffer);
+                    buffer = renderBuffer(row_bytes);
+                }
+                encodeRow(buffer, format, row_pixels, offset, width);
+            }
+            writeFully(channel, buffer);
+            if (incremental && binary && custom_win == null && rendered_path == null) rememberRender(bitmap, header);
 
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Error: couldn't write to file, the directory doesn't exist.");
+        } catch (FileSystemException e) {
             // When the current image viewer reloads the file, it is not accessible to Java.
             // Therefore waiting a small amount of time can ensure cleared file locks.
             // Might also result in a endless loop ¯\_(ツ)_/¯
@@ -374,21 +449,244 @@ public class Bitmap {
             System.out.println(e.toString());
             throw new IllegalArgumentException("Error: couldn't write to file.");
         }
+        if (rendered_pixels != null && rendered_time == null) rememberFile(rendered_path); // Once the channel is closed
+    }
+
+    /** Overwrites the pixels that changed since the last render in the file that was rendered last. Only the changed rows
+     * are compared with the pixels in the file, so repainting an area with the same colors (e.g. the background of an
+     * animation) writes nothing. Every pixel of a binary file takes a fixed number of bytes (a bit in pbm files), which
+     * makes it possible to update the file in place. The changed bytes are written at their positions through a channel
+     * that is closed again afterwards, nothing keeps the file open between renders.
+     * @param path The file
+     * @param format The format of the file | e.g. "ppm"
+     * @param header The header the file would be rendered with
+     * @return Whether the file was updated, false if it has to be rendered completely
+     */
+    private boolean renderChanges(Path path, String format, String header) {
+        if (rendered_pixels == null || !path.equals(rendered_path) || !header.equals(rendered_header) || rendered_pixels.length != pixels.length) {
+            return false;
+        }
+        int header_bytes = header.getBytes(StandardCharsets.UTF_8).length;
+        int row_bytes = switch (format) {
+            case "ppm" -> canvas_width * 3;
+            case "pgm" -> canvas_width;
+            default -> (canvas_width + 7) / 8;
+        };
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            if (!isRendered(path)) return false; // The file was replaced or changed in the meantime
+            for (int row = 0; row < canvas_height; row++) {
+                writeChanges(channel, format, row, header_bytes + (long) row * row_bytes);
+            }
+        } catch (IOException e) {
+            return false; // The file is rendered completely instead
+        }
+        rememberFile(path);
+        return true;
+    }
+
+    /** Writes the pixels of a row that differ from the file at their position and marks the row as unchanged
+     * @param channel The channel of the file
+     * @param format The format of the file | e.g. "ppm"
+     * @param row The row
+     * @param position The position of the first byte of the row in the file
+     * @throws IOException if the write operation wasn't successful
+     */
+    private void writeChanges(FileChannel channel, String format, int row, long position) throws IOException {
+        int start = row * canvas_width; // The index of the first pixel of the row
+        int from = changed_from[row], to = changed_to[row];
+        changed_from[row] = Integer.MAX_VALUE;
+        changed_to[row] = -1;
+        // Narrowing the changed columns down to the pixels that differ from the file
+        while (from <= to && pixels[start + from] == rendered_pixels[start + from]) from++;
+        while (to >= from && pixels[start + to] == rendered_pixels[start + to]) to--;
+        if (from > to) return;
+        System.arraycopy(pixels, start + from, rendered_pixels, start + from, to - from + 1);
+
+        if (format.equals("pbm")) { // Eight pixels share a byte, the whole bytes are encoded again
+            from -= from % 8;
+            to = Math.min(to | 7, canvas_width - 1);
+            position += from / 8;
+        } else {
+            position += format.equals("ppm") ? from * 3 : from;
+        }
+        ByteBuffer buffer = renderBuffer((to - from + 1) * 3);
+        encodeRow(buffer, format, pixels, start + from, to - from + 1);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /** Checks whether the file is still the one that was rendered last, by it's key, size and modification time
+     * @param path The file
+     * @return Whether the file can be updated in place
+     * @throws IOException if the attributes of the file can't be read
+     */
+    private boolean isRendered(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return attributes.size() == rendered_size && Objects.equals(attributes.fileKey(), rendered_key) && attributes.lastModifiedTime().equals(rendered_time);
+    }
+
+    /** Remembers the key, size and modification time of the file after it was written
+     * @param path The file
+     */
+    private void rememberFile(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            rendered_size = attributes.size();
+            rendered_key = attributes.fileKey();
+            rendered_time = attributes.lastModifiedTime();
+        } catch (IOException e) {
+            forgetRender(); // The file can't be recognized again, the next render writes it completely
+        }
+    }
+
+    /** Remembers the file that was rendered completely, the following changes are tracked for incremental renders
+     * @param path The file
+     * @param header The header of the file
+     */
+    private void rememberRender(Path path, String header) {
+        rendered_path = path;
+        rendered_header = header;
+        rendered_pixels = pixels.clone();
+        changed_from = new int[canvas_height];
+        changed_to = new int[canvas_height];
+        Arrays.fill(changed_from, Integer.MAX_VALUE);
+        Arrays.fill(changed_to, -1);
+    }
+
+    /**
+     * Forgets the file that was rendered last and stops tracking the changes, the next render writes the whole file.
+     */
+    private void forgetRender() {
+        rendered_path = null;
+        rendered_header = null;
+        rendered_pixels = null;
+        rendered_key = null;
+        rendered_time = null;
+        changed_from = null;
+        changed_to = null;
+    }
+
+    /** Returns the cleared render buffer, which is reused between renders and only grows
+     * @param bytes How many bytes the buffer has to fit at least
+     * @return The render buffer
+     */
+    private ByteBuffer renderBuffer(int bytes) {
+        if (render_buffer == null || render_buffer.capacity() < bytes) {
+            render_buffer = ByteBuffer.allocateDirect(Math.max(bytes, 1 << 16));
+        }
+        return render_buffer.clear();
+    }
+
+    /**
+     * Writes the content of the buffer to the channel and clears it.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /** Encodes one row of packed pixels in the specified format
+     * @param buffer The buffer the row is appended to
+     * @param format The format of the file | e.g. "ppm"
+     * @param row_pixels The packed pixels
+     * @param offset The index of the first pixel of the row
+     * @param width How many pixels the row has
+     */
+    private void encodeRow(ByteBuffer buffer, String format, int[] row_pixels, int offset, int width) {
+        switch (format) {
+            case "ppm" -> {
+                for (int x = offset; x < offset + width; x++) {
+                    int rgb = row_pixels[x];
+                    putValue(buffer, rgb >>> 16);
+                    putValue(buffer, rgb >>> 8 & 0xFF);
+                    putValue(buffer, rgb & 0xFF);
+                }
+            }
+            case "pgm" -> {
+                for (int x = offset; x < offset + width; x++) {
+                    int rgb = row_pixels[x];
+                    putValue(buffer, ((rgb >>> 16) + (rgb >>> 8 & 0xFF) + (rgb & 0xFF)) / 3);
+                }
+            }
+            default -> {
+                int bits = 0; // The pixels of the current byte, 1 is black
+                for (int x = 0; x < width; x++) {
+                    int rgb = row_pixels[offset + x];
+                    int bit = (rgb >>> 16) + (rgb >>> 8 & 0xFF) + (rgb & 0xFF) > 255 * 3 / 2 ? 0 : 1;
+                    if (!binary) {
+                        buffer.put((byte) ('0' + bit)).put((byte) ' ');
+                        continue;
+                    }
+                    bits = bits << 1 | bit;
+                    if (x % 8 == 7) {
+                        buffer.put((byte) bits);
+                        bits = 0;
+                    }
+                }
+                if (binary && width % 8 != 0) buffer.put((byte) (bits << 8 - width % 8)); // Rows are padded to whole bytes
+            }
+        }
+        if (!binary) buffer.put((byte) '\n');
+    }
+
+    /** Appends a color value, as one byte in the binary formats or as text followed by a space
+     * @param buffer The buffer
+     * @param value The value between 0 and 255 | e.g. 255
+     */
+    private void putValue(ByteBuffer buffer, int value) {
+        if (binary) {
+            buffer.put((byte) value);
+        } else { // The digits are appended directly
+            if (value >= 100) buffer.put((byte) ('0' + value / 100));
+            if (value >= 10) buffer.put((byte) ('0' + value / 10 % 10));
+            buffer.put((byte) ('0' + value % 10)).put((byte) ' ');
+        }
+    }
+
+    /**
+     * @param binary Whether render() writes the binary formats (P6, P5, P4) instead of plain text (P3, P2, P1) | d = true
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /** In incremental mode render() overwrites only the pixels that changed since the last render, if the same file is
+     * rendered again with the same header and the bitmap is written in a binary format. A file that was replaced or
+     * changed in between (another key, size or modification time) is rendered completely.
+     * @param incremental Whether render() only writes the changed pixels | d = false
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        if (!incremental) forgetRender();
+    }
+
+    public boolean isIncremental() {
+        return incremental;
     }
 
     /**@see #render(String, int[][][], boolean) **/
     public void render(int[][][] custom_win) {render(filename, custom_win, false);}
     /**@see #render(String, int[][][], boolean) **/
-    public void render() {render(filename, canvas, false);}
+    public void render() {render(filename, null, false);}
     /**@see #render(String, int[][][], boolean) **/
-    public void render(String filename) {render(filename, canvas, false);}
+    public void render(String filename) {render(filename, null, false);}
     /**@see #render(String, int[][][], boolean) **/
     public void render(int[][][] custom_win, String filename) {render(filename, custom_win,false);}
     /**@see #render(String, int[][][], boolean) **/
-    public void render(boolean report_path) {render(filename, canvas, report_path);}
+    public void render(boolean report_path) {render(filename, null, report_path);}
 
     public Object[][] readFromFile(String filePath, boolean overwriteSettings) {
         if (!filePath.contains(".") || !filePath.split("\\.")[1].equals("ppm")) {throw new IllegalArgumentException("provided file isn't in the ppm format");}
+        if (isBinaryFile(filePath)) {return readBinaryFile(filePath, overwriteSettings);}
 
         ArrayList<String> comments = new ArrayList<>();
         Integer width = null; Integer height = null;
@@ -473,7 +771,7 @@ public class Bitmap {
             this.canvas_width = width;
             this.canvas_height = height;
             this.comments.addAll(comments);
-            this.canvas = content;
+            setCanvas(content);
         }
 
         // [int, int, int, String[]], int[][][]]
@@ -481,6 +779,75 @@ public class Bitmap {
 
     }
 
+    /**
+     * @return Whether the file starts with the magic number of the binary ppm format (P6)
+     */
+    private static boolean isBinaryFile(String filePath) {
+        try (var input = Files.newInputStream(Path.of(filePath))) {
+            return input.read() == 'P' && input.read() == '6';
+        } catch (IOException ignored) {
+            return false; // Reported by the plain text reader
+        }
+    }
+
+    /** Reads a binary ppm file (P6), as written by render()
+     * @see #readFromFile(String, boolean)
+     */
+    private Object[][] readBinaryFile(String filePath, boolean overwriteSettings) {
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(Path.of(filePath));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("file does not exist");
+        }
+
+        // The header consists of the magic number, width, height and max value, separated by whitespace or comment lines
+        ArrayList<String> comments = new ArrayList<>();
+        int[] header = new int[3];
+        int position = 2;
+        for (int field = 0; field < header.length; field++) {
+            while (position < bytes.length && (Character.isWhitespace(bytes[position]) || bytes[position] == '#')) {
+                if (bytes[position] == '#') { // Comment line
+                    int end = position;
+                    while (end < bytes.length && bytes[end] != '\n') end++;
+                    comments.add(new String(bytes, position + 1, end - position - 1, StandardCharsets.UTF_8));
+                    position = end;
+                }
+                position++;
+            }
+            int start = position;
+            while (position < bytes.length && Character.isDigit(bytes[position])) position++;
+            if (start == position) {throw new IllegalArgumentException("the provided file does not contain width, height and max value in the file header");}
+            header[field] = Integer.parseInt(new String(bytes, start, position - start, StandardCharsets.US_ASCII));
+        }
+        position++; // A single whitespace separates the header and the content
+        int width = header[0], height = header[1], maxVal = header[2];
+        if (maxVal > 255) {throw new IllegalArgumentException("only files with one byte per color value are supported");}
+        if (bytes.length - position < width * height * 3) {throw new IllegalArgumentException("the provided file is too short");}
+
+        Integer[][][] content_as_rows = new Integer[height][width][3];
+        int[][][] content = new int[height][width][3];
+        for (int row = 0; row < height; row++) {
+            for (int pixel = 0; pixel < width; pixel++) {
+                for (int color_information = 0; color_information < 3; color_information++) {
+                    int value = bytes[position++] & 0xFF;
+                    content[row][pixel][color_information] = value;
+                    content_as_rows[row][pixel][color_information] = value;
+                }
+            }
+        }
+
+        if (overwriteSettings) {
+            this.canvas_width = width;
+            this.canvas_height = height;
+            this.comments.addAll(comments);
+            setCanvas(content);
+        }
+
+        // [int, int, int, String[]], int[][][]]
+        return new Object[][]{{width, height, maxVal, comments}, content_as_rows};
+    }
+
     // Stores a color_provider in the RGB color_provider format
     public class Color extends ColorProvider{
         int[] color;
@@ -535,6 +902,13 @@ public class Bitmap {
         Color (int r, int g, int b) {this(r,g,b,1.0);}
         /**@see #Color(String, double)**/
         Color (String color) {this(color,1.0);}
+
+        /**
+         * @return The packed RGB value of the color_provider (0xRRGGBB), as stored in the canvas
+         */
+        int rgb() {
+            return color[0] << 16 | color[1] << 8 | color[2];
+        }
     }
 
     /** Class to create patterns.
@@ -621,7 +995,7 @@ public class Bitmap {
                 case "opacity":
                     return colors.mix(
                             run_slot_1(x, y),
-                            new Color(vertical ? (canvas[canvas_height-y][x-1]) : (canvas[canvas_height-x][y-1])),
+                            new Color(vertical ? pixel(canvas_height-y, x-1) : pixel(canvas_height-x, y-1)),
                             opacity);
                 case "blur":
                     Color col = null;
@@ -638,7 +1012,7 @@ public class Bitmap {
                             }
                         }
                     } else {
-                        col = new Color(vertical ? (canvas[canvas_height-y][x-1]) : (canvas[canvas_height-x][y-1]));
+                        col = new Color(vertical ? pixel(canvas_height-y, x-1) : pixel(canvas_height-x, y-1));
                     }
                     return col;
                 case "grid":
@@ -755,6 +1129,14 @@ public class Bitmap {
             return pattern;
         }
 
+        /** Compiles the pattern with it's current settings (slots, from and to, ...), e.g. before an area is filled
+         * @return The compiled pattern, which returns the same colors as run()
+         * @see CompiledPattern
+         */
+        CompiledPattern compile() {
+            return new CompiledPattern(this);
+        }
+
         private Pattern(ColorProvider slot_1, ColorProvider slot_2, String pattern, boolean horizontal, boolean shiftPattern, int from, int to, boolean fastPattern, Predicate<int[]> custom_function, double opacity, boolean auto) {
             this(slot_1, slot_2, pattern, horizontal, shiftPattern, from, to, fastPattern, custom_function, opacity, auto, null);
         }
@@ -842,6 +1224,228 @@ public class Bitmap {
 
     }
 
+    /** A pattern or color compiled into a tree of evaluators, used when many pixels are filled with the same pattern.
+     * The pattern name, the slots and the settings are resolved once. The colors are calculated row by row: each node
+     * calculates the rows of it's slots and selects or mixes them per pixel, writing packed RGB values (0xRRGGBB) without
+     * creating any object. A compiled pattern keeps the settings of the time it was compiled and must not be shared
+     * between threads.
+     * @see Pattern#run(int, int)
+     */
+    final class CompiledPattern {
+
+        private final Operation operation; // The pattern, null for a color
+        private final int rgb; // The packed color, if the compiled object is a color
+        private final CompiledPattern slot_1, slot_2;
+
+        private final boolean horizontal, shift, mixed_gradients;
+        private final int from, to;
+        private final double opacity;
+
+        private final Predicate<int[]> custom_function;
+        private final Function<int[], Integer> smoothed_function;
+        private final int[] arguments = new int[4]; // The arguments of the custom / smoothed function {x, y, from, to}, reused for every pixel
+        // The values of the smoothed function for x-1, x and x+1 of the last evaluated pixel, reused by the next pixel of the row
+        private int last_x = Integer.MIN_VALUE, last_y, value_before, value, value_after;
+
+        private int[] row_1 = new int[0], row_2 = new int[0]; // The colors of the slots in the current row, reused for every row
+        private int[] gradient_row; // The colors of the last row of a gradient between two colors, which repeats in every row
+        private int gradient_x; // The x-coordinate of the first pixel of the gradient row
+        private final int[] pixel = new int[1];
+
+        private CompiledPattern(Color color) {
+            this.operation = null;
+            this.rgb = color.rgb();
+            this.slot_1 = null; this.slot_2 = null;
+            this.horizontal = false; this.shift = false; this.mixed_gradients = false;
+            this.from = 0; this.to = 0; this.opacity = 0.0;
+            this.custom_function = null; this.smoothed_function = null;
+        }
+
+        private CompiledPattern(Pattern pattern) {
+            this.operation = Operation.valueOf(pattern.pattern.toUpperCase());
+            this.rgb = 0;
+            this.slot_1 = compile(pattern.slot_1);
+            this.slot_2 = compile(pattern.slot_2);
+            this.horizontal = pattern.horizontal;
+            this.shift = pattern.shiftPattern;
+            // If both slots are gradients, the colors are mixed 1:1
+            this.mixed_gradients = pattern.slot_1.getClass() == Pattern.class && pattern.slot_2.getClass() == Pattern.class
+                    && ((Pattern) pattern.slot_1).pattern.equals("gradient") && ((Pattern) pattern.slot_2).pattern.equals("gradient");
+            this.from = pattern.from;
+            this.to = pattern.to;
+            this.opacity = pattern.opacity;
+            this.custom_function = pattern.custom_function;
+            this.smoothed_function = pattern.smoothed_function;
+        }
+
+        /** Calculates the color of a single pixel, equal to {@code pattern.run(x, y).rgb()}
+         * @param x the x-coordinate
+         * @param y the y-coordinate
+         * @return the packed RGB value
+         */
+        int rgb(int x, int y) {
+            if (operation == null) return rgb;
+            row(pixel, 0, x, 1, y);
+            return pixel[0];
+        }
+
+        /** Calculates the colors of the pixels x to x+length-1 of a row, equal to {@code pattern.run(x, y).rgb()} for each.
+         * Pixels of the canvas are read (opacity) before any pixel is written, so the target may be the canvas itself.
+         * @param target The array the packed RGB values are written to
+         * @param offset The index of the first pixel in target
+         * @param x the x-coordinate of the first pixel
+         * @param length How many pixels are calculated
+         * @param y the y-coordinate
+         */
+        void row(int[] target, int offset, int x, int length, int y) {
+            if (operation == null) {
+                Arrays.fill(target, offset, offset + length, rgb);
+                return;
+            }
+            if (shift) {x++; y++;}
+            // The slots get the (shifted) coordinates of this pattern, only the conditions swap them when horizontal
+            if (row_1.length < length) {
+                row_1 = new int[length];
+                row_2 = new int[length];
+            }
+            slot_1.row(row_1, 0, x, length, y);
+
+            switch (operation) {
+                case NORMAL -> System.arraycopy(row_1, 0, target, offset, length);
+                case OPACITY -> {
+                    int background = (canvas_height-y) * canvas_width + x-1; // The pixel at the coordinates of the pattern
+                    for (int i = 0; i < length; i++) {
+                        target[offset + i] = mix(row_1[i], pixels[background + i], opacity);
+                    }
+                }
+                case GRADIENT -> {
+                    slot_2.row(row_2, 0, x, length, y);
+                    if (slot_1.operation == null && slot_2.operation == null && (horizontal || mixed_gradients)) {
+                        // The balance is the same for the whole row
+                        Arrays.fill(target, offset, offset + length, mix(slot_1.rgb, slot_2.rgb, balance(y)));
+                    } else if (slot_1.operation == null && slot_2.operation == null) {
+                        // The balance only depends on x, so every row of a fill equals the first one
+                        if (gradient_row == null || gradient_x != x || gradient_row.length != length) {
+                            gradient_row = new int[length];
+                            gradient_x = x;
+                            for (int i = 0; i < length; i++) {
+                                gradient_row[i] = mix(slot_1.rgb, slot_2.rgb, balance(x + i));
+                            }
+                        }
+                        System.arraycopy(gradient_row, 0, target, offset, length);
+                    } else {
+                        for (int i = 0; i < length; i++) {
+                            target[offset + i] = mix(row_1[i], row_2[i], balance(horizontal ? y : x + i));
+                        }
+                    }
+                }
+                default -> {
+                    slot_2.row(row_2, 0, x, length, y);
+                    for (int i = 0; i < length; i++) {
+                        boolean first = horizontal ? first(y, x + i) : first(x + i, y);
+                        target[offset + i] = first ? row_1[i] : row_2[i];
+                    }
+                }
+            }
+        }
+
+        /** Calculates the balance of a gradient
+         * @param x the x-coordinate (y if horizontal)
+         * @return a double between 0.0 (first slot) and 1.0 (second slot), NaN if from equals to
+         */
+        private double balance(int x) {
+            if (mixed_gradients) return 0.5;
+            double balance = (x - from) / (double) (to - from);
+            return balance > 1.0 ? 1.0 : balance < 0.0 ? 0.0 : balance; // Equal to Math.min / Math.max, except for -0.0 (which mixes equally)
+        }
+
+        /** Evaluates the condition of the pattern
+         * @param x the x-coordinate (swapped with y if horizontal)
+         * @param y the y-coordinate (swapped with x if horizontal)
+         * @return Whether the first slot is selected
+         */
+        private boolean first(int x, int y) {
+            return switch (operation) {
+                case GRID -> x * y % 2 == 0;
+                case STRIPES -> x % 2 == 0;
+                case CHECKERBOARD -> (x+y) % 2 == 0;
+                case CELLS -> shift == ((Math.sin(x * y)) > 0.5);
+                case BIGCELLS -> Math.sin(Math.toDegrees(x*y)) > 0.1;
+                case SPACE -> (int) Math.toDegrees(Math.sin(x*y))*1.5 % 2 == 0;
+                case DOTGRID -> x*y % 4 == 0;
+                case BIGGRID -> x*y % 5 == 0;
+                case HUGEGRID -> x*y % 19 == 0;
+                case SUPERHUGEGRID -> x*y % 73 == 0;
+                case FLOWERGRID -> x*y % 6 == 0;
+                case DOTLINES -> (int) Math.sin(Math.toRadians(x*y)) % 2 == 0;
+                case WAVE -> Math.sin((double) x/y) > 0.05;
+                case CUSTOM -> custom_function.test(arguments(x, y));
+                case SMOOTHED_FUNCTION -> smoothed(x, y);
+                default -> true;
+            };
+        }
+
+        /**
+         * @return The arguments of the custom / smoothed function {x, y, from, to}
+         */
+        private int[] arguments(int x, int y) {
+            arguments[0] = x; arguments[1] = y; arguments[2] = from; arguments[3] = to;
+            return arguments;
+        }
+
+        /** Whether the pixel lies on the smoothed function. The function is expected to return the same value for the
+         * same arguments, so the values of the last pixel are reused when the next pixel of the row is evaluated.
+         */
+        private boolean smoothed(int x, int y) {
+            if (y == last_y && x == last_x + 1) {
+                value_before = value;
+                value = value_after;
+            } else {
+                value = smoothed_function.apply(arguments(x, y));
+                value_before = smoothed_function.apply(arguments(x-1, y));
+            }
+            value_after = smoothed_function.apply(arguments(x+1, y));
+            last_x = x; last_y = y;
+            return value == y || y > value_before && y < value_after || y < value_before && y > value_after;
+        }
+
+        /** Mixes two packed colors, equal to {@link Colors#mix(int[], int[], double)}
+         * @param balance a double between 0.0 (rgb_1) and 1.0 (rgb_2) representing the balance
+         * @throws IllegalArgumentException if the balance is out of bounds
+         */
+        private static int mix(int rgb_1, int rgb_2, double balance) {
+            if (balance > 1.0 || balance < 0.0) {
+                throw new IllegalArgumentException("balance should be a value between 0.0 (color_1) and 1.0 (color_2)");
+            }
+            int r = (int) ((rgb_1 >>> 16) * (1.0 - balance) + (rgb_2 >>> 16) * balance);
+            int g = (int) ((rgb_1 >>> 8 & 0xFF) * (1.0 - balance) + (rgb_2 >>> 8 & 0xFF) * balance);
+            int b = (int) ((rgb_1 & 0xFF) * (1.0 - balance) + (rgb_2 & 0xFF) * balance);
+            return r << 16 | g << 8 | b;
+        }
+    }
+
+    /**
+     * The patterns a CompiledPattern can evaluate, named like the pattern names.
+     */
+    private enum Operation {
+        NORMAL, OPACITY, GRID, STRIPES, CHECKERBOARD, GRADIENT, CELLS, BIGCELLS, SPACE, DOTGRID, BIGGRID, HUGEGRID, SUPERHUGEGRID,
+        FLOWERGRID, DOTLINES, WAVE, CUSTOM, SMOOTHED_FUNCTION
+    }
+
+    /** Compiles a color provider
+     * @param color_provider The color provider, has to be of type Color or Pattern
+     * @return The compiled color provider
+     * @throws IllegalArgumentException if the color_provider isn't of type Color or Pattern
+     */
+    private CompiledPattern compile(ColorProvider color_provider) {
+        if (color_provider.getClass() == Color.class) {
+            return new CompiledPattern((Color) color_provider);
+        } else if (color_provider.getClass() == Pattern.class) {
+            return ((Pattern) color_provider).compile();
+        }
+        throw new IllegalArgumentException("color_provider can only be a Pattern or a Color");
+    }
+
     public class PatternBuilder {
         ColorProvider slot_1;
         ColorProvider slot_2;
@@ -1214,18 +1818,17 @@ public class Bitmap {
             if (outline != null && outline.active) circle(pos_x, pos_y, radius+outline.thickness, outline.color_provider, borderclip);
             // if (outline != null) setAutoPattern(pos_x-radius, pos_x+radius, pos_y-radius, pos_y+radius, outline, false);
 
+            // Each row of the circle is a span of the pixels with dx² + dy² < radius², found with integer math
+            CompiledPattern compiled_pattern = compile(color_provider);
+            long radius_squared = (long) radius * radius;
             for (int y = pos_y-radius; y < pos_y+radius; y++) {
-                for (int x = pos_x-radius; x < pos_x+radius; x++) {
-                    int equation = (int) (Math.pow(radius, 2) - (Math.pow(pos_x - x, 2) + Math.pow(pos_y-y, 2)));
-
-                    if (equation > 0) {
-                        try {
-                            changePixel(x, y, color_provider);
-                        } catch (Exceptions.PixelOutOfBoundsException e) {
-                            if (borderclip) throw e;
-                        }
-                    }
-                }
+                long rest = radius_squared - (long) (pos_y-y) * (pos_y-y); // dx² has to be less than the rest
+                if (rest <= 0) continue;
+                if (!borderclip && (y < 1 || y > canvas_height)) continue;
+                int half_width = (int) Math.sqrt(rest - 1); // The largest dx with dx² < rest
+                while ((long) half_width * half_width >= rest) half_width--;
+                while ((long) (half_width+1) * (half_width+1) < rest) half_width++;
+                fillSpan(y, pos_x - half_width, pos_x + half_width, compiled_pattern, borderclip);
             }
         }
 
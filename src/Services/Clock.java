@@ -0,0 +1,87 @@
+package Services;
+
+/**
+ * Primitive representation of the simulation time as a single long (minutes since 00-00:00).
+ * All helpers are static and work on the value only, day, hour and minute are derived by arithmetic.
+ * Formatted strings are cached per minute of the day, so formatting does not allocate within the first 100 days.
+ * @see Time
+ */
+public final class Clock {
+
+    public static final int MINUTES_PER_HOUR = 60;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    // Cached 'hh:mm' representation of each minute of the day
+    private static final String[] TIMES_OF_DAY = new String[MINUTES_PER_DAY];
+    // Cached 'dd-hh:mm' representation of each minute of the first 100 days is built lazily, per day
+    private static final String[][] DAYS = new String[100][];
+
+    static {
+        for (int i = 0; i < MINUTES_PER_DAY; i++) {
+            TIMES_OF_DAY[i] = pad(i / MINUTES_PER_HOUR) + ":" + pad(i % MINUTES_PER_HOUR);
+        }
+    }
+
+    private Clock() { }
+
+    /**
+     * @return The epoch minute of the specified time | e.g. of(1, 8, 30) = 1950
+     */
+    public static long of(int day, int hour, int minute) {
+        return (long) day * MINUTES_PER_DAY + (long) hour * MINUTES_PER_HOUR + minute;
+    }
+
+    public static int day(long epoch_minute) {
+        return (int) (epoch_minute / MINUTES_PER_DAY);
+    }
+
+    public static int hour(long epoch_minute) {
+        return (int) (epoch_minute % MINUTES_PER_DAY / MINUTES_PER_HOUR);
+    }
+
+    public static int minute(long epoch_minute) {
+        return (int) (epoch_minute % MINUTES_PER_HOUR);
+    }
+
+    /**
+     * @return The minutes since midnight | e.g. 510 (08:30)
+     */
+    public static int minute_of_day(long epoch_minute) {
+        return (int) (epoch_minute % MINUTES_PER_DAY);
+    }
+
+    /**
+     * @return String representation of the time in the format 'dd-hh:mm'
+     */
+    public static String format(long epoch_minute) {
+        int day = day(epoch_minute);
+        if (day >= DAYS.length) return pad(day) + "-" + format_time_of_day(epoch_minute);
+
+        String[] day_strings = DAYS[day];
+        if (day_strings == null) { // Racing threads build the same strings, which is harmless
+            day_strings = new String[MINUTES_PER_DAY];
+            DAYS[day] = day_strings;
+        }
+        int minute_of_day = minute_of_day(epoch_minute);
+        String formatted = day_strings[minute_of_day];
+        if (formatted == null) {
+            formatted = pad(day) + "-" + TIMES_OF_DAY[minute_of_day];
+            day_strings[minute_of_day] = formatted;
+        }
+        return formatted;
+    }
+
+    /**
+     * @return String representation of the time of the day in the format 'hh:mm'
+     */
+    public static String format_time_of_day(long epoch_minute) {
+        return TIMES_OF_DAY[minute_of_day(epoch_minute)];
+    }
+
+    /**
+     * @return The value with at least two digits | e.g. "07"
+     */
+    private static String pad(int value) {
+        return value < 10 ? "0" + value : String.valueOf(value);
+    }
+}
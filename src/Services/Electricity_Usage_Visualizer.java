@@ -11,6 +11,7 @@ public class Electricity_Usage_Visualizer {
 
     public Electricity_Usage_Visualizer(Time global_time) {
         bm = new Bitmap(60*24, 1000,"Electricity_Usage", false);
+        bm.setIncremental(true); // Each draw only overwrites the pixels that changed since the last one
         cols = bm.cols;
         pbs = bm.pbs;
         this.global_time = global_time;
@@ -0,0 +1,176 @@
+package Services;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Backend of the Out interface. Records are handed to a bounded lock-free ring buffer (multiple producers, one consumer)
+ * and a background thread formats and writes them to System.out in batches, so the tick loops never wait for stdout.
+ * The order of the records is preserved. If the buffer is full, producers wait until the writer made room.
+ * @see Out
+ */
+final class Log_Writer {
+
+    private static final int CAPACITY = 1 << 14; // How many records the ring buffer can hold (power of 2)
+    private static final int MASK = CAPACITY - 1;
+    private static final int MAX_BATCH = 1024; // How many records are written at most per batch
+    private static final long IDLE_NANOS = 1_000_000; // How long the writer sleeps if the buffer is empty
+
+    // The ring buffer, each slot stores the position it is ready for (Vyukov's bounded queue)
+    private static final Record[] records = new Record[CAPACITY];
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final AtomicLong tail = new AtomicLong(); // The next position that is claimed by a producer
+    private static long head = 0; // The next position that is read by the writer (only accessed by the writer thread)
+    private static final AtomicLong written = new AtomicLong(); // How many records were written so far
+
+    private static volatile boolean asynchronous = true;
+    private static volatile Thread writer; // Started upon the first asynchronous record, read by the producers without a lock
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        // Records that are still buffered when the program ends are written before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(Log_Writer::flush, "Log_Writer-shutdown"));
+    }
+
+    private Log_Writer() { }
+
+    /** Outputs a record, either directly or through the ring buffer
+     * @param object_name The name of the object | e.g Simon's car or V2G Unit
+     * @param id The unique id of the object | e.g. 53E56203
+     * @param message_log_level The log level of the message
+     * @param format The message or a format string if args are specified
+     * @param args The arguments of the format string, formatted on the writer thread
+     */
+    static void write(String object_name, String id, Out.Log_Level message_log_level, String format, Object[] args) {
+        Record record = new Record(object_name, id, message_log_level, format, args);
+        if (!asynchronous) {
+            String line = record.toLine();
+            if (line != null) synchronized (Log_Writer.class) { System.out.println(line); }
+            return;
+        }
+        if (writer == null) start();
+
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & MASK);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records[index] = record;
+                    sequences.set(index, position + 1); // Publishes the record to the writer
+                    return;
+                }
+            } else if (difference < 0) {
+                // The buffer is full, the writer needs to catch up
+                LockSupport.unpark(writer);
+                Thread.onSpinWait();
+            }
+            // Otherwise another producer claimed the position, retry with the new tail
+        }
+    }
+
+    /**
+     * Blocks until every record that was handed over before the call has been written.
+     */
+    static void flush() {
+        long target = tail.get();
+        if (writer == null || Thread.currentThread() == writer) return;
+        while (written.get() < target) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(50_000);
+        }
+        System.out.flush();
+    }
+
+    /** Switches between the asynchronous ring buffer and synchronous output. Buffered records are flushed first.
+     * @param asynchronous Whether records should be written by the background thread
+     */
+    static void setAsynchronous(boolean asynchronous) {
+        if (!asynchronous) flush();
+        Log_Writer.asynchronous = asynchronous;
+    }
+
+    static boolean isAsynchronous() {
+        return asynchronous;
+    }
+
+    private static synchronized void start() {
+        if (writer != null) return;
+        Thread thread = new Thread(Log_Writer::drain, "Log_Writer");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    /**
+     * Loop of the writer thread, writes the buffered records in batches.
+     */
+    private static void drain() {
+        StringBuilder batch = new StringBuilder(8192);
+        while (true) {
+            int count = 0;
+            while (count < MAX_BATCH) {
+                int index = (int) (head & MASK);
+                if (sequences.get(index) != head + 1) break; // Empty or not yet published
+                Record record = records[index];
+                records[index] = null;
+                sequences.set(index, head + CAPACITY); // Frees the slot for the next round
+                head++;
+                count++;
+
+                String line;
+                try {
+                    line = record.toLine();
+                } catch (Throwable throwable) { // A bad format string or argument mustn't stop the writer thread
+                    line = record.fallbackLine(throwable);
+                }
+                if (line != null) batch.append(line).append(System.lineSeparator());
+            }
+            if (count == 0) {
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                if (batch.length() > 0) {
+                    PrintStream out = System.out; // Read each time, the stream may have been replaced
+                    synchronized (Log_Writer.class) { out.print(batch); }
+                    out.flush();
+                }
+            } catch (Throwable throwable) { // The batch is lost, but the writer keeps running
+                throwable.printStackTrace();
+            } finally {
+                // Always counted, otherwise flush() would wait for the records forever
+                batch.setLength(0);
+                written.addAndGet(count);
+            }
+        }
+    }
+
+    /**
+     * A message that was handed to the writer, it is only formatted when it is written.
+     */
+    private record Record(String object_name, String id, Out.Log_Level message_log_level, String format, Object[] args) {
+
+        /**
+         * @return The output line, null if the message is empty
+         */
+        String toLine() {
+            String out = args == null || args.length == 0 ? format : String.format(format, args);
+            if (out.isEmpty()) return null;
+            return String.format("[%s (ID: %s) ~ %s]: ", object_name.toUpperCase(), id.toUpperCase(), message_log_level.toString()) + out;
+        }
+
+        /**
+         * @param throwable The reason why the message couldn't be formatted
+         * @return The output line with the unformatted message, without calling toString() of the arguments
+         */
+        String fallbackLine(Throwable throwable) {
+            return "[" + String.valueOf(object_name).toUpperCase() + " (ID: " + String.valueOf(id).toUpperCase() + ") ~ " + message_log_level + "]: " + format
+                    + " (could not be formatted: " + throwable.getClass().getName() + ")";
+        }
+    }
+}
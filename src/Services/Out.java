@@ -2,7 +2,8 @@ package Services;
 
 /**
  * Interface to output text in a traceable and unified format.
- * Classes should implement a overload that only requires out and a log_level.
+ * Classes should implement a overload that only requires out and a log_level (and optionally format arguments).
+ * Messages are written asynchronously by the Log_Writer, call flush() before writing to System.out directly.
  */
 public interface Out{
 
@@ -14,25 +15,49 @@ public interface Out{
      * @param message_log_level The log level of the message.
      */
     static void print(String object_name, String id, String out, Log_Level log_level, Log_Level message_log_level) {
-        String identifier_string = String.format("[%s (ID: %s) ~ %s]: ", object_name.toUpperCase(), id.toUpperCase(), message_log_level.toString());
-        String copy_of_id_string = identifier_string; // Used to check if the identifier_string was changed
-
-        switch (log_level) {
-            // Using the drop-through behavior of a switch to cover all lower cases if a higher log level is set.
-            case ALL:
-                if (message_log_level == Log_Level.ALL) identifier_string += out;
-            case INFO:
-                if (message_log_level == Log_Level.INFO) identifier_string += out;
-            case WARN:
-                if (message_log_level == Log_Level.WARN) identifier_string += out;
-            case ERROR:
-                if (message_log_level == Log_Level.ERROR) identifier_string += out;
-
-                // If the string was changed (log level was sufficient), output the string.
-                if (!identifier_string.equals(copy_of_id_string)) System.out.println(identifier_string);
-            case NONE:
-                break;
-        }
+        if (isEnabled(log_level, message_log_level)) Log_Writer.write(object_name, id, message_log_level, out, null);
+    }
+
+    /** Outputs a parameterized message. The level is checked first and the message is only formatted if it is written,
+     * which happens later on the writer thread. The arguments therefore must not be changed after the call
+     * (e.g. pass time.inMinutes() instead of a Time object).
+     * @param object_name The name of the object | e.g Simon's car or V2G Unit
+     * @param id The unique id of the object | e.g. 53E56203
+     * @param log_level The log level of the object.
+     * @param message_log_level The log level of the message.
+     * @param format A format string | e.g. "Drove %skm."
+     * @param args The arguments of the format string.
+     */
+    static void print(String object_name, String id, Log_Level log_level, Log_Level message_log_level, String format, Object... args) {
+        if (isEnabled(log_level, message_log_level)) Log_Writer.write(object_name, id, message_log_level, format, args);
+    }
+
+    /** Checks whether a message passes the log level of a object. Higher log levels include all lower ones.
+     * @param log_level The log level of the object.
+     * @param message_log_level The log level of the message.
+     * @return enabled : boolean
+     */
+    static boolean isEnabled(Log_Level log_level, Log_Level message_log_level) {
+        return message_log_level != Log_Level.NONE && message_log_level.ordinal() <= log_level.ordinal();
+    }
+
+    /**
+     * Blocks until every message that was printed so far has been written to System.out.
+     * Should be called before writing to System.out directly, otherwise the order of the output may change.
+     */
+    static void flush() {
+        Log_Writer.flush();
+    }
+
+    /** Messages are written by a background thread in batches by default, which keeps stdout out of the tick loops.
+     * @param asynchronous Whether messages should be written by the background thread (true) or directly (false)
+     */
+    static void setAsynchronous(boolean asynchronous) {
+        Log_Writer.setAsynchronous(asynchronous);
+    }
+
+    static boolean isAsynchronous() {
+        return Log_Writer.isAsynchronous();
     }
 
     /**
@@ -0,0 +1,68 @@
+package Services;
+
+import java.util.SplittableRandom;
+
+/**
+ * A random stream with a readable state, so it can be stored in a checkpoint and continued later.
+ * Uses the same algorithm (SplitMix64) as SplittableRandom and returns the same values for the same seed.
+ * Must not be shared between threads.
+ * @see Random_Streams
+ */
+public class Random_Stream {
+
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L; // The increment of the state per value
+
+    private long state; // The state, advanced by GOLDEN_GAMMA on each value
+
+    /**
+     * @param seed The initial state | e.g. 42
+     */
+    public Random_Stream(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Creates a stream with a random seed.
+     */
+    public Random_Stream() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    public int nextInt() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 33)) * 0x62A9D9ED799705F5L;
+        return (int) (((z ^ (z >>> 28)) * 0xCB24D0A5C88C35B3L) >>> 32);
+    }
+
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Returns a value between 0 (inclusive) and bound (exclusive), without modulo bias
+     * @param bound The upper bound | e.g. 10
+     * @return The value
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) throw new IllegalArgumentException("The bound must be positive.");
+        int value = nextInt();
+        int mask = bound - 1;
+        if ((bound & mask) == 0) return value & mask; // Power of 2
+        // Values of the last incomplete range are rejected
+        for (int u = value >>> 1; u + mask - (value = u % bound) < 0; u = nextInt() >>> 1);
+        return value;
+    }
+
+    /**
+     * @return The current state, a stream created with it continues with the same values
+     */
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
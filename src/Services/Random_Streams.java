@@ -0,0 +1,58 @@
+package Services;
+
+import java.util.SplittableRandom;
+
+/**
+ * Central source of randomness of a simulation. Every subsystem (weather, power plants, cars, ...) gets it's own
+ * Random_Stream that is derived from the seed and the name (and index) of the stream only.
+ * Streams therefore don't depend on the order in which they were requested, which keeps runs reproducible even if
+ * parallel workers request them concurrently. A single stream must not be shared between threads.
+ */
+public class Random_Streams {
+
+    private final long seed; // The seed of the simulation
+
+    /**
+     * @param seed The seed of the simulation | e.g. 42
+     */
+    public Random_Streams(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Creates random streams with a random seed.
+     */
+    public Random_Streams() {
+        this(new SplittableRandom().nextLong());
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /** Creates the stream of a subsystem. Requesting the same subsystem twice returns two equal streams.
+     * @param subsystem The name of the subsystem | e.g. "weather"
+     * @return A new Random_Stream
+     */
+    public Random_Stream stream(String subsystem) {
+        return stream(subsystem, 0);
+    }
+
+    /** Creates the stream of a indexed member of a subsystem, e.g. one stream per car or per day.
+     * @param subsystem The name of the subsystem | e.g. "car"
+     * @param index The index of the member | e.g. 4
+     * @return A new Random_Stream
+     */
+    public Random_Stream stream(String subsystem, long index) {
+        return new Random_Stream(mix(seed ^ mix(subsystem.hashCode() + 0x9E3779B97F4A7C15L * (index + 1))));
+    }
+
+    /**
+     * Scrambles the bits of a value (finalizer of SplitMix64), so that similar inputs result in unrelated seeds.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -1,11 +1,10 @@
 package Services;
 
 import java.lang.reflect.MalformedParametersException;
-import java.util.Arrays;
 
 /**
  * Simple class to generate a time object.
- * Services.Time is stored in the format [day, hour, minute] and is automatically recalculated if changed.
+ * Services.Time is stored as a single epoch minute, the format [day, hour, minute] is derived from it.
  *
  * One may criticise the extensive this.time usage in this class, but it helps keep track of
  * methods that interact directly with the time object (IDE highlighting) and I'm a Python
@@ -13,7 +12,7 @@ import java.util.Arrays;
  */
 public class Time {
 
-    private int[] time = {1, 0, 0};
+    private long epoch_minute = Clock.of(1, 0, 0); // Minutes since 00-00:00
 
     /**
      * @param initialTime Initiate the object with specified time, defaults to 01-00:00
@@ -33,6 +32,13 @@ public class Time {
         this("00-00:00"); // Overload of the default constructor
     }
 
+    /**
+     * @param epoch_minute Initiate the object with the specified minutes since 00-00:00
+     */
+    public Time (long epoch_minute) {
+        this.epoch_minute = epoch_minute;
+    }
+
     /**
      * @param time in the format "dd-hh:mm"
      */
@@ -49,8 +55,7 @@ public class Time {
         if (hour_and_time.length != 2 || day.length() != 2 || hour_and_time[0].length() != 2 || hour_and_time[1].length() != 2) {
             throw new MalformedParametersException();
         } else {
-            this.time = new int[]{Integer.parseInt(day), Integer.parseInt(hour_and_time[0]), Integer.parseInt(hour_and_time[1])};
-            updateTime();
+            this.epoch_minute = Clock.of(Integer.parseInt(day), Integer.parseInt(hour_and_time[0]), Integer.parseInt(hour_and_time[1]));
         }
     }
 
@@ -58,20 +63,29 @@ public class Time {
      * @return String representation of the time in the format 'dd-hh:mm'
      */
     public String asString() {
-        String[] result = {String.valueOf(this.time[0]), String.valueOf(this.time[1]), String.valueOf(this.time[2])};
-        for (int i = 0; i < result.length; i++) {
-            if (result[i].length() == 1) {
-                result[i] = "0" + result[i];
-            }
-        }
-        return String.join("-", new String[]{result[0], String.join(":",Arrays.copyOfRange(result, 1, 3))});
+        return Clock.format(this.epoch_minute);
+    }
+
+    /**
+     * @return String representation of the time of the day in the format 'hh:mm' (cached, does not allocate)
+     */
+    public String asTimeOfDayString() {
+        return Clock.format_time_of_day(this.epoch_minute);
     }
 
     /**
      * @return Integer array representation of the time in the format [dd, hh, mm]
      */
     public int[] asIntArr() {
-        return this.time.clone();
+        return new int[]{Clock.day(this.epoch_minute), Clock.hour(this.epoch_minute), Clock.minute(this.epoch_minute)};
+    }
+
+    /**
+     * @return The minutes since 00-00:00
+     * @see Clock
+     */
+    public long asEpochMinute() {
+        return this.epoch_minute;
     }
 
     /**
@@ -90,21 +104,21 @@ public class Time {
     }
 
     public int inMinutes() {
-        return time[0] * 24 * 60 + time[1] * 60 + time[2];
+        return (int) this.epoch_minute;
     }
-    public int inMinutesIsolated() {return time[2];}
+    public int inMinutesIsolated() {return Clock.minute(this.epoch_minute);}
 
     public double inHours() {
-        return time[0] * 24 + time[1] + time[2] / 60.0;
+        return Clock.day(this.epoch_minute) * 24 + Clock.hour(this.epoch_minute) + Clock.minute(this.epoch_minute) / 60.0;
     }
-    public int inHoursIsolated() {return time[1];}
+    public int inHoursIsolated() {return Clock.hour(this.epoch_minute);}
 
-    public int inMinutesWithHoursIsolated() {return time[1] * 60 + time[2];}
+    public int inMinutesWithHoursIsolated() {return Clock.minute_of_day(this.epoch_minute);}
 
     public double inDays() {
-        return time[0] + time[1] / 24.0 + time[2] / 60.0 / 24.0;
+        return Clock.day(this.epoch_minute) + Clock.hour(this.epoch_minute) / 24.0 + Clock.minute(this.epoch_minute) / 60.0 / 24.0;
     }
-    public int inDaysIsolated() {return time[2];}
+    public int inDaysIsolated() {return Clock.minute(this.epoch_minute);}
 
     /**
      * @param timedelta add the timedelta in the format int[] [dd, hh, mm]
@@ -113,31 +127,12 @@ public class Time {
         if (timedelta.length != 3) {
             throw new MalformedParametersException();
         }  else {
-            this.time[2] += timedelta[2];
-            this.time[1] += timedelta[1];
-            this.time[0] += timedelta[0];
-            updateTime();
+            this.epoch_minute += Clock.of(timedelta[0], timedelta[1], timedelta[2]);
         }
     }
 
     public void addTime(int minutes) {
-        this.time[2] += minutes;
-        updateTime();
-    }
-
-    private void updateTime() {
-        int[] counters = new int[2];
-
-        for (int i = 60; i > 0; i -= 36) { // This for loops only purpose is to safe 5 lines of code
-            int temp = this.time[i/24];
-            while (temp >= i) {
-                temp -= i;
-                counters[i/24 - 1] += 1;
-            }
-            this.time[i/24 - 1] += counters[i/24 - 1];
-            this.time[i/24] -= i * counters[i/24 - 1];
-        }
-
+        this.epoch_minute += minutes;
     }
 
     private String[] parseInputString(String inputString) throws MalformedParametersException{
@@ -0,0 +1,69 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded LRU cache for the generated days of the electricity grid.
+ * The weather and power plant values of a day only depend on (seed, day) and are cached separately from the snapshots,
+ * which additionally depend on the distribution. Sweeps over many distributions therefore reuse the generated days.
+ * A cache can be shared between several grids, all methods are thread safe.
+ * @see Electricity_Grid
+ */
+public class Snapshot_Cache {
+
+    private final LinkedHashMap<Day_Key, Electricity_Grid.Day_Sources> day_sources;
+    private final LinkedHashMap<Snapshot_Key, Electricity_Grid.Electricity_Snapshot> snapshots;
+
+    /**
+     * @param max_days How many days of weather and power plant values are kept | e.g. 64
+     * @param max_snapshots How many snapshots are kept | e.g. 256
+     */
+    public Snapshot_Cache(int max_days, int max_snapshots) {
+        if (max_days < 1 || max_snapshots < 1) throw new IllegalArgumentException("The cache needs to hold at least one entry.");
+        // Access ordered maps that evict the least recently used entry once they are full
+        day_sources = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Day_Key, Electricity_Grid.Day_Sources> eldest) {
+                return size() > max_days;
+            }
+        };
+        snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Snapshot_Key, Electricity_Grid.Electricity_Snapshot> eldest) {
+                return size() > max_snapshots;
+            }
+        };
+    }
+
+    /**
+     * Creates a cache for 64 days and 256 snapshots.
+     */
+    public Snapshot_Cache() {
+        this(64, 256);
+    }
+
+    /** Returns the cached values of a day, they are created upon the first request
+     * @param seed The seed of the simulation
+     * @param day The day | e.g. 3
+     * @param factory Creates the values if they are not cached
+     * @return The values of the day
+     */
+    synchronized Electricity_Grid.Day_Sources getDay_sources(long seed, int day, Supplier<Electricity_Grid.Day_Sources> factory) {
+        return day_sources.computeIfAbsent(new Day_Key(seed, day), key -> factory.get());
+    }
+
+    /** Returns the cached snapshot of a day, it is created upon the first request
+     * @param seed The seed of the simulation
+     * @param day The day | e.g. 3
+     * @param distribution The distribution of energy sources
+     * @param factory Creates the snapshot if it is not cached
+     * @return The snapshot of the day
+     */
+    synchronized Electricity_Grid.Electricity_Snapshot getSnapshot(long seed, int day, Electricity_Grid.Distribution distribution, Supplier<Electricity_Grid.Electricity_Snapshot> factory) {
+        return snapshots.computeIfAbsent(new Snapshot_Key(seed, day, distribution), key -> factory.get());
+    }
+
+    private record Day_Key(long seed, int day) { }
+
+    private record Snapshot_Key(long seed, int day, Electricity_Grid.Distribution distribution) { }
+}
@@ -0,0 +1,236 @@
+import Services.Out.Log_Level;
+import Services.Random_Stream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.*;
+
+/**
+ * Runs many scenarios (e.g. every combination of distributions, fleet sizes and charging profiles) concurrently to
+ * compare them. Every scenario operates it's own Grid with the seed of the scenario, so the results don't depend on the
+ * parallelism or on the order in which the scenarios finish. Scenarios with the same seed operate with the same weather
+ * and the same cars, only their parameters differ. The grids of a run share one Snapshot_Cache, so every day of a seed is
+ * generated once for all of them. Otherwise they share no mutable state, they are created without any output
+ * (Log_Level.NONE) and the visualizations are never used.
+ * The results are passed to a sink as soon as a scenario finishes, on the thread that called run().
+ */
+public class Sweep_Runner {
+
+    private final int parallelism; // How many scenarios are operated at the same time
+
+    /**
+     * @param parallelism How many scenarios are operated at the same time | e.g. Runtime.getRuntime().availableProcessors()
+     */
+    Sweep_Runner(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("The parallelism needs to be at least 1.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * A runner with one scenario per available processor at the same time.
+     */
+    Sweep_Runner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Builds every combination of the parameters as a scenario
+     * @param distributions The distributions of the grid | e.g. List.of(new Electricity_Grid.Distribution(70, 50))
+     * @param fleet_sizes How many cars the grids contain | e.g. {100, 1000}
+     * @param profile_mixes The charging profiles the cars get in turns | e.g. {{DEFAULT_PROFILE, WORK_PROFILE}}
+     * @param day_ahead Whether the grids use a day ahead schedule | e.g. {false, true}
+     * @param days How many days every scenario is operated | e.g. 7
+     * @param seeds The seeds of the grids, every combination is operated once per seed | e.g. {1, 2, 3}
+     * @return The scenarios with ascending ids
+     */
+    public static List<Scenario> scenarios(List<Electricity_Grid.Distribution> distributions, int[] fleet_sizes, Electric_Car.ChargingProfile[][] profile_mixes,
+                                           boolean[] day_ahead, int days, long[] seeds) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (long seed : seeds) {
+            for (Electricity_Grid.Distribution distribution : distributions) {
+                for (int fleet_size : fleet_sizes) {
+                    for (Electric_Car.ChargingProfile[] profiles : profile_mixes) {
+                        for (boolean scheduled : day_ahead) {
+                            scenarios.add(new Scenario(scenarios.size(), distribution, fleet_size, profiles.clone(), scheduled, days, seed));
+                        }
+                    }
+                }
+            }
+        }
+        return scenarios;
+    }
+
+    /**
+     * @param seed The seed of every grid | e.g. 42
+     * @see #scenarios(List, int[], Electric_Car.ChargingProfile[][], boolean[], int, long[])
+     */
+    public static List<Scenario> scenarios(List<Electricity_Grid.Distribution> distributions, int[] fleet_sizes, Electric_Car.ChargingProfile[][] profile_mixes,
+                                           boolean[] day_ahead, int days, long seed) {
+        return scenarios(distributions, fleet_sizes, profile_mixes, day_ahead, days, new long[]{seed});
+    }
+
+    /** Operates every scenario and passes the results to the sink in the order in which the scenarios finish
+     * @param scenarios The scenarios
+     * @param sink The sink of the results, it is not closed
+     * @throws IOException If the sink fails
+     * @throws InterruptedException If the calling thread is interrupted while waiting for a scenario
+     */
+    public void run(List<Scenario> scenarios, Sink sink) throws IOException, InterruptedException {
+        // Enough room for every day of every seed, so no day is generated twice
+        long seeds = scenarios.stream().mapToLong(Scenario::seed).distinct().count();
+        int days = scenarios.stream().mapToInt(Scenario::days).max().orElse(0);
+        Snapshot_Cache snapshot_cache = new Snapshot_Cache((int) Math.max(64, Math.min(seeds * days, Integer.MAX_VALUE)), 256);
+
+        ExecutorService executor = Executors.newWorkStealingPool(parallelism);
+        try {
+            CompletionService<Result> completion_service = new ExecutorCompletionService<>(executor);
+            for (Scenario scenario : scenarios) completion_service.submit(() -> simulate(scenario, snapshot_cache));
+            for (int i = 0; i < scenarios.size(); i++) {
+                try {
+                    sink.accept(completion_service.take().get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A scenario of the sweep failed.", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /** Operates a single scenario. Every second car is connected to a V2G unit for the whole run, the other cars drive
+     * a random route at the start of each day.
+     * @param scenario The scenario
+     * @param snapshot_cache The cache of the generated days, shared with the other scenarios of the sweep
+     * @return The statistics of the run
+     */
+    public static Result simulate(Scenario scenario, Snapshot_Cache snapshot_cache) {
+        long start = System.nanoTime();
+        Grid grid = new Grid(scenario.distribution(), scenario.seed(), Log_Level.NONE, snapshot_cache);
+        grid.setDay_ahead(scenario.day_ahead());
+        Random_Stream route_random = grid.random_streams.stream("routes");
+
+        Electric_Car[] fleet = new Electric_Car[scenario.fleet_size()];
+        for (int i = 0; i < fleet.length; i++) {
+            fleet[i] = Models.Random("Sweep " + i, "SW | " + i, grid, Log_Level.NONE);
+            fleet[i].charging_profile = scenario.profiles()[i % scenario.profiles().length];
+            if (i % 2 == 0) fleet[i].connectToV2GUnit(new V2G_Unit(i % 4 == 0 ? 150 : 22, grid, Log_Level.NONE));
+        }
+        for (int day = 0; day < scenario.days(); day++) {
+            for (int i = 1; i < fleet.length; i += 2) fleet[i].drive(20 + route_random.nextInt(380));
+            grid.operate(24 * 60);
+        }
+
+        Dispatcher dispatcher = grid.getDispatcher();
+        return new Result(scenario, grid.getDeficit_minutes(), grid.getUncovered_deficit(), dispatcher.getTotal_charged_energy(),
+                dispatcher.getTotal_discharged_energy(), grid.getTowing_events(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * @see #simulate(Scenario, Snapshot_Cache)
+     */
+    public static Result simulate(Scenario scenario) {
+        return simulate(scenario, new Snapshot_Cache());
+    }
+
+    /**
+     * A combination of parameters that is operated in it's own grid.
+     * @param id The index of the scenario in the sweep
+     * @param profiles The charging profiles the cars get in turns
+     * @param seed The seed of the grid, scenarios with the same seed have the same weather and cars
+     */
+    public record Scenario(int id, Electricity_Grid.Distribution distribution, int fleet_size, Electric_Car.ChargingProfile[] profiles,
+                           boolean day_ahead, int days, long seed) { }
+
+    /**
+     * The statistics of a scenario.
+     * @param deficit_minutes The minutes in which the cars covered less than 99% of the grid's deficit
+     * @param uncovered_deficit The deficit the cars didn't cover in kWh
+     * @param charged_energy The energy the cars were charged with in kWh
+     * @param discharged_energy The energy the cars fed into the grid in kWh
+     * @param towing_events How often a towing service was called
+     * @param runtime The runtime of the scenario in ms
+     */
+    public record Result(Scenario scenario, long deficit_minutes, double uncovered_deficit, double charged_energy, double discharged_energy,
+                         long towing_events, long runtime) { }
+
+    /**
+     * Receives the results of a sweep, always from the thread that runs the sweep.
+     */
+    public interface Sink extends Closeable {
+        void accept(Result result) throws IOException;
+    }
+
+    /**
+     * Writes one line per result into a CSV file.
+     */
+    public static class Csv_Sink implements Sink {
+        private final BufferedWriter writer;
+
+        /**
+         * @param path The file, it is overwritten | e.g. Path.of("sweep.csv")
+         */
+        public Csv_Sink(Path path) throws IOException {
+            writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer.write("id,distribution,fleet_size,profiles,day_ahead,days,seed,deficit_minutes,uncovered_deficit,charged_energy,discharged_energy,towing_events,runtime");
+            writer.newLine();
+        }
+
+        @Override
+        public void accept(Result result) throws IOException {
+            Scenario scenario = result.scenario();
+            writer.write(String.format(Locale.ROOT, "%d,%s,%d,%s,%b,%d,%d,%d,%.3f,%.3f,%.3f,%d,%d",
+                    scenario.id(), scenario.distribution(), scenario.fleet_size(), profiles(scenario.profiles()), scenario.day_ahead(), scenario.days(),
+                    scenario.seed(), result.deficit_minutes(), result.uncovered_deficit(), result.charged_energy(), result.discharged_energy(),
+                    result.towing_events(), result.runtime()));
+            writer.newLine();
+            writer.flush(); // Finished scenarios are visible even if the sweep is aborted
+        }
+
+        private static String profiles(Electric_Car.ChargingProfile[] profiles) {
+            return String.join(" ", Arrays.stream(profiles).map(Enum::name).toList());
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes one fixed size record per result (big endian): id, seed, deficit minutes, uncovered deficit, charged energy,
+     * discharged energy, towing events and runtime.
+     */
+    public static class Binary_Sink implements Sink {
+        private final DataOutputStream output;
+
+        /**
+         * @param path The file, it is overwritten | e.g. Path.of("sweep.bin")
+         */
+        public Binary_Sink(Path path) throws IOException {
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        }
+
+        @Override
+        public void accept(Result result) throws IOException {
+            output.writeInt(result.scenario().id());
+            output.writeLong(result.scenario().seed());
+            output.writeLong(result.deficit_minutes());
+            output.writeDouble(result.uncovered_deficit());
+            output.writeDouble(result.charged_energy());
+            output.writeDouble(result.discharged_energy());
+            output.writeLong(result.towing_events());
+            output.writeLong(result.runtime());
+            output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+}
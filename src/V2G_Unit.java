@@ -15,6 +15,7 @@ public class V2G_Unit implements Out {
     public Log_Level log_level; // The log level of the unit. Can be raised or lowered to only provide critical information.
 
     private Electric_Car connected_electric_car; // The connected electric car, null if none is connected.
+    private Charging_Curve charging_curve; // The charging curve of the connected electric car, null if none is connected.
 
     /**
      * @param charging_rate The charging rate of the V2G Unit in kW | e.g. 150kW
@@ -22,8 +23,16 @@ public class V2G_Unit implements Out {
      * @param log_level The log level of the unit.
      */
     V2G_Unit(double charging_rate, Grid operating_grid, Log_Level log_level) {
+        this(charging_rate, operating_grid, log_level, null);
+    }
+
+    /** Constructor that restores a unit from a checkpoint, the unit keeps it's id.
+     * @param grid_id The id of the unit, null to generate a new one
+     * @see Checkpoint
+     */
+    V2G_Unit(double charging_rate, Grid operating_grid, Log_Level log_level, String grid_id) {
         this.charging_rate = charging_rate;
-        grid_id = operating_grid.register(this);
+        this.grid_id = grid_id == null ? operating_grid.register(this) : operating_grid.register(this, grid_id);
         this.operating_grid = operating_grid;
 
         this.log_level = log_level;
@@ -47,15 +56,16 @@ public class V2G_Unit implements Out {
             used_energy += charge;
         } while (charge != 0.0);
 
-        print(String.format("Charged from %s%% to %s%%.", Math.round(old_charge_status), Math.round(connected_electric_car.getCharge_status())), Log_Level.INFO);
+        print("Charged from %s%% to %s%%.", Log_Level.INFO, Math.round(old_charge_status), Math.round(connected_electric_car.getCharge_status()));
         return used_energy;
     }
 
     /** Charges the car for the duration of one tick in the grid
      * @param custom_charge_status A custom charge status, is used to calculate the charging time
+     * @param max_energy The maximal energy the car can be charged with in kWh
      * @return How much energy was used
      */
-    private double tick_charge(double custom_charge_status) {
+    private double tick_charge(double custom_charge_status, double max_energy) {
         int tick_speed = operating_grid.getTick_speed();
         boolean is_simulated = custom_charge_status >= 0;
 
@@ -63,21 +73,14 @@ public class V2G_Unit implements Out {
         
         double car_charge_status = is_simulated ? custom_charge_status : connected_electric_car.getCharge_status();
 
-        // Charging curve similar to: (Blue bar stretched) https://forococheselectricos.com/wp-content/uploads/2019/08/Charge-curve-Model-SX-LR-CCS.png
-        // Below array defines the charging curve
-        // Tl;DR Model S with 150W: 0 -> 20 in ~10min, 0 -> 50 in ~20min, 0 -> 100 in ~70min
-        double[] charge_speed_reduction = new double[] {0.50, 0.85, 0.90, 0.95, 0.775, 0.60, 0.425, 0.38, 0.36, 0.35, 0.0};
+        double charge = Math.min(charging_curve.charge(car_charge_status, tick_speed), max_energy);
 
-        double max_charge_rate = Math.min(charging_rate, connected_electric_car.max_charge_rate);
-        double reduced_charging_rate = (max_charge_rate > 10.0 ? charge_speed_reduction[(int) (car_charge_status / 10)] : 1.0) * max_charge_rate; // Charging curve does not apply if the charging_rate is less than 10kW (btw what is wrong with VW?? Max 3.6kW is super slow...)
-
-        double charge = car_charge_status != 100.0 ? reduced_charging_rate / 60 * (tick_speed) : 0.0;
-
-        double new_charge_status = Math.min(((connected_electric_car.getCapacity() * (car_charge_status / 100)) + (charge)) / connected_electric_car.getCapacity() * 100, 100.0);
+        double new_charge_status = charging_curve.charge_status_after(car_charge_status, charge);
 
         if (!is_simulated) {
             connected_electric_car.setCharge_status(new_charge_status);
             connected_electric_car.state.setDescriptor(charge > 0.0 ? Electric_Car.State.Descriptor.CONNECTED_CHARGING : Electric_Car.State.Descriptor.CONNECTED_IDLE);
+            journal_energy(Journal.Type.CHARGE, charge);
 
             return charge;
         } else {
@@ -85,30 +88,91 @@ public class V2G_Unit implements Out {
         }
     }
 
-    double tick_discharge() {
-        // The cars discharge rate is 20% slower than it's max charging rate
-        double discharge_rate = Math.min(connected_electric_car.max_charge_rate, charging_rate) * 0.8;
-        double discharge = discharge_rate / 60 * 1;
-        double total_discharge = 0.0;
-        // Calculating on a per minute basis to prevent excessive discharges
-        for (int i = 0; i < operating_grid.getTick_speed(); i++) {
-            double new_charge_status = ((connected_electric_car.getCapacity() * (connected_electric_car.getCharge_status() / 100)) - (discharge)) / connected_electric_car.getCapacity() * 100;
-            if (new_charge_status >= connected_electric_car.charging_profile.min_charge_status && new_charge_status >= 0.0) {
-                total_discharge += discharge;
-                connected_electric_car.setCharge_status(new_charge_status);
+    /** Discharges the car for the duration of one tick, the whole minutes that can be discharged without excessive
+     * discharges are calculated in one step
+     * @param max_energy The maximal energy that should be fed into the grid in kWh
+     * @param is_simulated Whether the car should stay unchanged (only the energy is calculated)
+     * @return The energy that was (or would be) fed into the grid in kWh
+     * @see Charging_Curve#discharge_minutes(double, double, double, int)
+     */
+    private double tick_discharge(double max_energy, boolean is_simulated) {
+        double charge_status = connected_electric_car.getCharge_status();
+        int minutes = charging_curve.discharge_minutes(charge_status, discharge_floor(), max_energy, operating_grid.getTick_speed());
+        double energy = charging_curve.discharge_energy(minutes);
+
+        if (!is_simulated) {
+            if (minutes > 0) { // A car that can't discharge keeps it's charge status untouched
+                connected_electric_car.setCharge_status(charging_curve.discharge_status_after(charge_status, minutes));
                 connected_electric_car.state.setDescriptor(Electric_Car.State.Descriptor.CONNECTED_DISCHARGING);
-            } else {
-                break;
             }
+            journal_energy(Journal.Type.DISCHARGE, energy);
         }
-        // 10% of energy is lost when discharging
-        double energy_loss = 0.1;
+        return energy;
+    }
+
+    /** Calculates the charge status the connected car must not be discharged below during the next tick. That is the min
+     * charge status, and for a car with contracted times also the charge status from which charging in the ticks left
+     * until the next contracted time still reaches the contracted charge status.
+     * @return The floor in % | e.g. 62.5
+     */
+    double discharge_floor() {
+        Electric_Car.ChargingProfile charging_profile = connected_electric_car.charging_profile;
+        if (charging_profile.contracted_times == null || charging_profile.contracted_charge_status == null) return charging_profile.min_charge_status;
+
+        int tick_speed = operating_grid.getTick_speed();
+        int minutes = charging_profile.minutes_until_next_contract(operating_grid.time.inMinutesWithHoursIsolated());
+        int ticks = Math.max(minutes - tick_speed, 0) / tick_speed; // The ticks after this one, this tick discharges
+        return Math.max(charging_profile.min_charge_status, charging_curve.contract_floor(charging_profile.contracted_charge_status, ticks, tick_speed));
+    }
+
+    /** Calculates how many minutes before the next contracted time the connected car falls below it's discharge floor, as
+     * long as the charge status stays the same
+     * @return The minutes before the contracted time | e.g. 95
+     * @see #discharge_floor()
+     */
+    int contract_minutes() {
+        Electric_Car.ChargingProfile charging_profile = connected_electric_car.charging_profile;
+        int tick_speed = operating_grid.getTick_speed();
+        int ticks = charging_curve.contract_ticks(charging_profile.contracted_charge_status, connected_electric_car.getCharge_status(), tick_speed);
+        return (int) Math.min((ticks + 1L) * tick_speed, Integer.MAX_VALUE);
+    }
+
+    double tick_discharge() {
+        return tick_discharge(Double.POSITIVE_INFINITY, false);
+    }
 
-        return total_discharge * (1 - energy_loss);
+    /** Discharges the car for the duration of one tick, but feeds at most the specified energy into the grid
+     * @param max_energy The energy the grid needs in kWh
+     * @return The energy that was fed into the grid in kWh
+     */
+    double tick_discharge(double max_energy) {
+        return tick_discharge(max_energy, false);
     }
 
     double tick_charge() {
-        return tick_charge(-1);
+        return tick_charge(-1, Double.POSITIVE_INFINITY);
+    }
+
+    /** Charges the car for the duration of one tick, but with at most the specified energy
+     * @param max_energy The energy the grid can provide in kWh
+     * @return How much energy was used
+     */
+    double tick_charge(double max_energy) {
+        return tick_charge(-1, max_energy);
+    }
+
+    /**
+     * @return The energy the connected car could be charged with during the next tick in kWh
+     */
+    double charge_demand() {
+        return charging_curve.charge(connected_electric_car.getCharge_status(), operating_grid.getTick_speed());
+    }
+
+    /**
+     * @return The energy the connected car could feed into the grid during the next tick in kWh
+     */
+    double discharge_supply() {
+        return tick_discharge(Double.POSITIVE_INFINITY, true);
     }
 
     /** Calculates the charging duration up to 100% (if constantly charged)
@@ -123,16 +187,22 @@ public class V2G_Unit implements Out {
      */
     public Time calculate_charging_duration (double up_to) {
         Time duration = new Time();
-        double charge_status = connected_electric_car.getCharge_status();
+        duration.addTime(calculate_charging_minutes(up_to));
+        return duration;
+    }
 
-        while (charge_status < up_to) {
-            charge_status = tick_charge(charge_status);
-            duration.addTime(operating_grid.getTick_speed());
-        }
+    /** Calculates the charging duration in minutes up to a point specified by the user (if constantly charged)
+     * @param up_to The charge status that should be reached in % | e.g. 80.0
+     * @return The duration in minutes, equal to charging tick by tick with the current tick speed.
+     * @see Charging_Curve#charging_duration(double, double, int)
+     */
+    public int calculate_charging_minutes(double up_to) {
+        return charging_curve.charging_duration(connected_electric_car.getCharge_status(), up_to, operating_grid.getTick_speed());
+    }
 
-        return duration;
+    Charging_Curve getCharging_curve() {
+        return charging_curve;
     }
-    
 
     public Electric_Car getConnected_electric_car() {
         return connected_electric_car;
@@ -145,11 +215,14 @@ public class V2G_Unit implements Out {
     boolean connectElectricCar(Electric_Car electric_car) {
         boolean successful;
         if (isConnected()) {
-            print(String.format("Connected electric car with ID %s needs to be disconnected before the unit can be used by another vehicle.", connected_electric_car.grid_id), Log_Level.ERROR);
+            print("Connected electric car with ID %s needs to be disconnected before the unit can be used by another vehicle.", Log_Level.ERROR, connected_electric_car.grid_id);
             successful = false;
         } else {
             this.connected_electric_car = electric_car;
+            this.charging_curve = Charging_Curve.of(Math.min(charging_rate, electric_car.max_charge_rate), electric_car.getCapacity());
             connected_electric_car.v2g_unit = this;
+            if (electric_car.fleet_state != null) electric_car.fleet_state.charging_curves[electric_car.fleet_row] = charging_curve;
+            operating_grid.update_priority(electric_car); // Joins the bucket of it's priority
             successful = true;
         }
         return successful;
@@ -162,27 +235,39 @@ public class V2G_Unit implements Out {
     boolean disconnectElectricCar(Electric_Car electric_car) {
         boolean successful;
         if (connected_electric_car == electric_car) {
+            if (electric_car.fleet_state != null) electric_car.fleet_state.charging_curves[electric_car.fleet_row] = null;
             connected_electric_car.v2g_unit = null;
             connected_electric_car = null;
+            charging_curve = null;
+            operating_grid.update_priority(electric_car); // Leaves it's priority bucket
             successful = true;
-            print(String.format("Successfully disconnected the electric car with ID %s.", electric_car.grid_id), Log_Level.INFO);
+            print("Successfully disconnected the electric car with ID %s.", Log_Level.INFO, electric_car.grid_id);
         } else {
-            print(String.format("Tried disconnecting electric car with ID %s, but selected vehicle is not connected.", electric_car.grid_id), Log_Level.ERROR);
+            print("Tried disconnecting electric car with ID %s, but selected vehicle is not connected.", Log_Level.ERROR, electric_car.grid_id);
             successful = false;
         }
         return successful;
     }
 
+    /** Writes the energy of one tick to the journal of the grid, if one is written
+     * @param type CHARGE or DISCHARGE
+     * @param energy The energy taken from / fed into the grid in kWh
+     */
+    private void journal_energy(Journal.Type type, double energy) {
+        Journal journal = operating_grid.getJournal();
+        if (journal != null) journal.energy(type, connected_electric_car, energy, operating_grid.time.asEpochMinute());
+    }
+
     public boolean isConnected() {
         return connected_electric_car != null;
     }
 
     /**
      * Overload of the inherited print method.
-     * @see Out#print(String, String, String, Log_Level, Log_Level)
+     * @see Out#print(String, String, Log_Level, Log_Level, String, Object...)
      */
-    private void print(String out, Log_Level message_log_level) {
-        Out.print("V2G_Unit", this.grid_id, out, this.log_level, message_log_level);
+    private void print(String out, Log_Level message_log_level, Object... args) {
+        Out.print("V2G_Unit", this.grid_id, this.log_level, message_log_level, out, args);
     }
 
 }
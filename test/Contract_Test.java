@@ -0,0 +1,43 @@
+import Services.Out;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that discharging never costs a car with a contract it's contracted charge status, half of the fleet uses the
+ * work profile and competes with the other half for the balance of the grid.
+ */
+class Contract_Test {
+    private static final int FLEET_SIZE = 400;
+    private static final int DAYS = 5;
+
+    @ParameterizedTest(name = "day ahead {0}")
+    @ValueSource(booleans = {false, true})
+    void work_profile_reaches_contract(boolean day_ahead) {
+        Out.setAsynchronous(false);
+        Grid grid = new Grid(new Electricity_Grid.Distribution(70, 50), 1, Out.Log_Level.NONE);
+        grid.setDay_ahead(day_ahead);
+        for (int i = 0; i < FLEET_SIZE; i++) {
+            Electric_Car electric_car = Models.Random("Owner " + i, "V2G " + i, grid, Out.Log_Level.NONE);
+            electric_car.charging_profile = i % 2 == 0 ? Electric_Car.ChargingProfile.DEFAULT_PROFILE : Electric_Car.ChargingProfile.WORK_PROFILE;
+            electric_car.connectToV2GUnit(new V2G_Unit(i % 4 < 2 ? 150 : 22, grid, Out.Log_Level.NONE));
+        }
+
+        List<String> missed = new ArrayList<>(); // The contracts that weren't fulfilled
+        for (int tick = 0; tick < DAYS * 24 * 60; tick++) {
+            grid.operate(1);
+            int minute = grid.time.inMinutesWithHoursIsolated();
+            if (minute != 8 * 60 && minute != 17 * 60) continue;
+            for (Electric_Car electric_car : grid.electric_cars) {
+                if (electric_car.charging_profile != Electric_Car.ChargingProfile.WORK_PROFILE) continue;
+                if (electric_car.getCharge_status() < 80) missed.add(String.format(Locale.ROOT, "%s on day %d at %02d:00 with %.3f%%", electric_car.owner, tick / (24 * 60), minute / 60, electric_car.getCharge_status()));
+            }
+        }
+        assertTrue(missed.isEmpty(), () -> missed.size() + " contracts were missed, e.g. " + missed.subList(0, Math.min(missed.size(), 5)));
+    }
+}
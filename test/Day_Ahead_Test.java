@@ -0,0 +1,66 @@
+import Services.Out;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the day ahead schedule never leaves more of the deficit uncovered than the dispatch tick by tick, by
+ * comparing the results of the scenarios that only differ in day_ahead. The cars discharge in whole minutes, so
+ * differences up to 0.1% of the uncovered deficit count as equal.
+ */
+class Day_Ahead_Test {
+    private static final double TOLERANCE = 0.001; // The relative difference of the uncovered deficit that counts as equal
+
+    @Test
+    void day_ahead_covers_deficit() throws Exception {
+        Out.setAsynchronous(false);
+        Electric_Car.ChargingProfile[][] profile_mixes = {
+                {Electric_Car.ChargingProfile.DEFAULT_PROFILE},
+                {Electric_Car.ChargingProfile.WORK_PROFILE},
+                {Electric_Car.ChargingProfile.DEFAULT_PROFILE, Electric_Car.ChargingProfile.WORK_PROFILE},
+                Electric_Car.ChargingProfile.values()
+        };
+        List<Sweep_Runner.Scenario> scenarios = Sweep_Runner.scenarios(List.of(new Electricity_Grid.Distribution(70, 50)), new int[]{100, 1000},
+                profile_mixes, new boolean[]{false, true}, 4, new long[]{1, 2, 3});
+
+        List<Sweep_Runner.Result> results = new ArrayList<>();
+        new Sweep_Runner(1).run(scenarios, new Sweep_Runner.Sink() {
+            @Override
+            public void accept(Sweep_Runner.Result result) {
+                results.add(result);
+            }
+
+            @Override
+            public void close() { }
+        });
+
+        // The scenarios that only differ in day_ahead share a key, the first one waits for the other one
+        Map<List<Object>, Sweep_Runner.Result> unpaired = new HashMap<>();
+        List<String> worse = new ArrayList<>();
+        int compared = 0;
+        for (Sweep_Runner.Result result : results) {
+            Sweep_Runner.Scenario scenario = result.scenario();
+            List<Object> key = List.of(scenario.distribution(), scenario.fleet_size(), List.of(scenario.profiles()), scenario.days(), scenario.seed());
+            Sweep_Runner.Result other = unpaired.remove(key);
+            if (other == null) {
+                unpaired.put(key, result);
+                continue;
+            }
+            Sweep_Runner.Result per_tick = scenario.day_ahead() ? other : result, day_ahead = scenario.day_ahead() ? result : other;
+            if (day_ahead.uncovered_deficit() > per_tick.uncovered_deficit() * (1 + TOLERANCE) + 1e-9) {
+                worse.add(String.format(Locale.ROOT, "scenario %d left %.3f kWh uncovered, scenario %d only %.3f kWh",
+                        day_ahead.scenario().id(), day_ahead.uncovered_deficit(), per_tick.scenario().id(), per_tick.uncovered_deficit()));
+            }
+            compared++;
+        }
+        assertEquals(scenarios.size() / 2, compared);
+        assertTrue(worse.isEmpty(), () -> "The day ahead schedule left more of the deficit uncovered: " + worse);
+    }
+}